@@ -0,0 +1,316 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread-safe implementation of {@link JsonifiableDataUnit}, for the data unit shared and updated by several
+ * threads, such as metrics and state aggregation.
+ * <p>
+ * The top-level entries are kept in a {@link ConcurrentHashMap}:
+ * <ul>
+ *     <li>Reads of the top-level entries ({@link #read(Function)} and the {@code readX} methods) take no lock.</li>
+ *     <li>Writes ({@link #ensureEntry(String, Object)}, {@link #removeEntry(String)}, {@link #compute(String,
+ *     BiFunction)}, {@link #merge(String, Object, BiFunction)} and so on) are atomic per entry and run concurrently
+ *     across entries, as they share one lock between them.</li>
+ *     <li>{@link #toJsonObject()}, {@link #writeToBuffer(Buffer)} and the JSON expressions are built from a snapshot
+ *     taken exclusively, so no write is half seen in them.</li>
+ * </ul>
+ * <p>
+ * Notice:
+ * <ul>
+ *     <li>{@link #toJsonObject()} returns a new copy of the top-level entries on each call, modifications on it
+ *     would not be reflected to this data unit; use the write methods instead.</li>
+ *     <li>Nested {@link JsonObject} and {@link JsonArray} values are shared as is and are not thread-safe;
+ *     replace them as a whole with {@link #compute(String, BiFunction)} when they are updated concurrently.</li>
+ *     <li>The order of the top-level entries is not kept.</li>
+ * </ul>
+ *
+ * @since 5.0.0
+ */
+public class ConcurrentJsonifiableDataUnitImpl implements JsonifiableDataUnit {
+    /**
+     * As {@link ConcurrentHashMap} does not accept null values, a JSON null is stored as this marker.
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    private final ConcurrentHashMap<String, Object> entries;
+    /**
+     * Writers share the read lock, and the snapshot takers hold the write lock, so that a snapshot is consistent.
+     */
+    private final Lock writeSharingLock;
+    private final Lock snapshotLock;
+
+    public ConcurrentJsonifiableDataUnitImpl() {
+        this.entries = new ConcurrentHashMap<>();
+        ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+        this.writeSharingLock = readWriteLock.readLock();
+        this.snapshotLock = readWriteLock.writeLock();
+    }
+
+    public ConcurrentJsonifiableDataUnitImpl(@Nonnull JsonObject jsonObject) {
+        this();
+        putAllEntries(jsonObject);
+    }
+
+    private static Object mask(@Nullable Object value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Object unmask(@Nullable Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private void putAllEntries(@Nonnull JsonObject jsonObject) {
+        jsonObject.getMap().forEach((k, v) -> entries.put(k, mask(v)));
+    }
+
+    /**
+     * @return a new {@link JsonObject} as the snapshot of the top-level entries.
+     */
+    @Nonnull
+    @Override
+    public JsonObject toJsonObject() {
+        snapshotLock.lock();
+        try {
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(16, entries.size() * 4 / 3 + 1));
+            entries.forEach((k, v) -> map.put(k, unmask(v)));
+            return new JsonObject(map);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Replace all the entries with the ones of the given JSON object, atomically as seen by snapshots.
+     */
+    @Override
+    public void reloadData(@Nonnull JsonObject jsonObject) {
+        snapshotLock.lock();
+        try {
+            entries.clear();
+            putAllEntries(jsonObject);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
+        JsonPointer jsonPointer = JsonPointer.create();
+        Class<T> tClass = func.apply(jsonPointer);
+        Object o;
+        if (jsonPointer.isRootPointer()) {
+            o = toJsonObject();
+        } else {
+            o = jsonPointer.query(this, new RootIterator());
+        }
+        return JsonMetrics.castRead(this, o, tClass);
+    }
+
+    /**
+     * @return the value of the top-level entry, nullable.
+     */
+    @Nullable
+    @Override
+    public Object readEntry(@Nonnull String key) {
+        return RootJsonPointerIterator.jsonify(unmask(entries.get(key)));
+    }
+
+    @Override
+    public void ensureEntry(String key, Object value) {
+        writeSharingLock.lock();
+        try {
+            entries.put(key, mask(value));
+        } finally {
+            writeSharingLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeEntry(String key) {
+        writeSharingLock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            writeSharingLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically computes the value of the top-level entry, following {@link ConcurrentHashMap#compute(Object,
+     * BiFunction)}; the function is called once, and should be short; it must not modify this data unit nor take
+     * a snapshot of it.
+     *
+     * @param key               the key of the top-level entry
+     * @param remappingFunction the function to compute the value with the key and the current value (null if
+     *                          absent or JSON null); if it returns null, the entry is removed
+     * @return the new value, or null if none
+     */
+    @Nullable
+    public Object compute(@Nonnull String key, @Nonnull BiFunction<String, Object, Object> remappingFunction) {
+        writeSharingLock.lock();
+        try {
+            return entries.compute(key, (k, v) -> remappingFunction.apply(
+                    k,
+                    RootJsonPointerIterator.jsonify(unmask(v))
+            ));
+        } finally {
+            writeSharingLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically computes the value of the top-level entry if it is absent, following
+     * {@link ConcurrentHashMap#computeIfAbsent(Object, Function)}; an entry with JSON null is seen as present.
+     *
+     * @return the current (existing or computed) value, or null if none
+     */
+    @Nullable
+    public Object computeIfAbsent(@Nonnull String key, @Nonnull Function<String, Object> mappingFunction) {
+        writeSharingLock.lock();
+        try {
+            return RootJsonPointerIterator.jsonify(unmask(entries.computeIfAbsent(key, mappingFunction)));
+        } finally {
+            writeSharingLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically merges the value into the top-level entry, following {@link ConcurrentHashMap#merge(Object, Object,
+     * BiFunction)}; a JSON null entry is seen as absent.
+     *
+     * @param key               the key of the top-level entry
+     * @param value             the non-null value to use if the entry is absent
+     * @param remappingFunction the function to recompute a value if present; if it returns null, the entry is removed
+     * @return the new value, or null if none
+     */
+    @Nullable
+    public Object merge(
+            @Nonnull String key,
+            @Nonnull Object value,
+            @Nonnull BiFunction<Object, Object, Object> remappingFunction
+    ) {
+        writeSharingLock.lock();
+        try {
+            return unmask(entries.compute(key, (k, v) -> {
+                Object current = unmask(v);
+                if (current == null) {
+                    return value;
+                }
+                return remappingFunction.apply(RootJsonPointerIterator.jsonify(current), value);
+            }));
+        } finally {
+            writeSharingLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically adds the delta to the numeric top-level entry; an absent, null or non-numeric entry is seen as zero.
+     *
+     * @return the new value
+     */
+    public long incrementLong(@Nonnull String key, long delta) {
+        Object x = compute(key, (k, v) -> v instanceof Number ? ((Number) v).longValue() + delta : delta);
+        return (Long) Objects.requireNonNull(x);
+    }
+
+    /**
+     * As of 5.0.0, for the concurrent implementation, it is atomic.
+     */
+    @Override
+    public JsonObject ensureJsonObject(String key) {
+        Object x = compute(key, (k, v) -> v instanceof JsonObject ? v : new JsonObject());
+        return (JsonObject) Objects.requireNonNull(x);
+    }
+
+    /**
+     * As of 5.0.0, for the concurrent implementation, it is atomic.
+     */
+    @Override
+    public JsonArray ensureJsonArray(String key) {
+        Object x = compute(key, (k, v) -> v instanceof JsonArray ? v : new JsonArray());
+        return (JsonArray) Objects.requireNonNull(x);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return a weakly consistent iterator of the top-level entries, which does not support removal.
+     */
+    @Nonnull
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        Iterator<Map.Entry<String, Object>> iterator = entries.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Object> next() {
+                Map.Entry<String, Object> entry = iterator.next();
+                return new AbstractMap.SimpleImmutableEntry<>(
+                        entry.getKey(),
+                        RootJsonPointerIterator.jsonify(unmask(entry.getValue()))
+                );
+            }
+        };
+    }
+
+    @Override
+    public void writeToBuffer(Buffer buffer) {
+        JsonMetrics.writeToBuffer(this, toJsonObject(), buffer);
+    }
+
+    @Override
+    public String toJsonExpression() {
+        return JsonMetrics.encode(this, toJsonObject());
+    }
+
+    @Override
+    public String toFormattedJsonExpression() {
+        return toJsonObject().encodePrettily();
+    }
+
+    @Override
+    public String toString() {
+        return toJsonExpression();
+    }
+
+    /**
+     * Resolves the first token of a JSON Pointer from the top-level entries, and the rest as usual.
+     */
+    private final class RootIterator extends RootJsonPointerIterator {
+        private RootIterator() {
+            super(ConcurrentJsonifiableDataUnitImpl.this);
+        }
+
+        @Override
+        protected boolean rootContainsKey(@Nonnull String key) {
+            return entries.containsKey(key);
+        }
+
+        @Nullable
+        @Override
+        protected Object getRootValue(@Nonnull String key) {
+            return unmask(entries.get(key));
+        }
+    }
+}
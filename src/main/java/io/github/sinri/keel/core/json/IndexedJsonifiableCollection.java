@@ -0,0 +1,612 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * A collection of entities with secondary indexes on JSON paths, to find the entities by the values on the paths
+ * without reading every entity.
+ * <p>
+ * An index is declared with a name, a type and one or more JSON Pointers, whose values make up the composite key of an
+ * entity:
+ * <ul>
+ *     <li>{@link IndexType#HASH} finds by the whole key, see {@link #findEqual(String, Object...)};</li>
+ *     <li>{@link IndexType#SORTED} also finds by leading parts of the key, by ranges and by string prefixes, with the
+ *     results in the order of the keys.</li>
+ * </ul>
+ * Only strings, numbers and booleans are indexed; an entity with any value of the key absent, null, or an object or
+ * array, is left out of the index. Numbers are compared by value, so {@code 1} matches {@code 1.0}. In a sorted index,
+ * booleans come before numbers, and numbers before strings.
+ * <p>
+ * The keys are read when an entity is added, so the entity should not be modified on the indexed paths while in the
+ * collection, or {@link #reindex(UnmodifiableJsonifiableEntity)} should be called after. The entities are held by
+ * identity, in the order of being added.
+ * <p>
+ * It is thread-safe: lookups run concurrently, and writes are serialized. The iteration is over a snapshot, which is
+ * kept until the next write.
+ *
+ * @param <E> the type of the entities
+ * @since 5.0.0
+ */
+public class IndexedJsonifiableCollection<E extends UnmodifiableJsonifiableEntity> implements Iterable<E> {
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+    private final Map<E, Node<E>> nodes = new IdentityHashMap<>();
+    private final LinkedHashSet<Node<E>> order = new LinkedHashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile @Nullable List<E> snapshot;
+
+    public IndexedJsonifiableCollection() {
+    }
+
+    /**
+     * Declare an index, built over the entities already in the collection.
+     *
+     * @param name         the name of the index to look up with
+     * @param type         the type of the index
+     * @param jsonPointers the JSON Pointers to the values of the composite key in order, such as {@code /user/id}
+     * @throws IllegalArgumentException if the name is taken, or a pointer is not valid
+     */
+    public IndexedJsonifiableCollection<E> createIndex(@Nonnull String name, @Nonnull IndexType type, @Nonnull String... jsonPointers) {
+        if (jsonPointers.length == 0) {
+            throw new IllegalArgumentException("No path for the index " + name);
+        }
+        String[][] paths = new String[jsonPointers.length][];
+        for (int i = 0; i < jsonPointers.length; i++) {
+            paths[i] = decodePointer(jsonPointers[i]);
+        }
+        lock.writeLock().lock();
+        try {
+            if (indexes.containsKey(name)) {
+                throw new IllegalArgumentException("The index " + name + " exists");
+            }
+            Index index = type == IndexType.HASH
+                    ? new Index(indexes.size(), paths, new HashMap<>())
+                    : new Index(indexes.size(), paths, new TreeMap<>());
+            indexes.put(name, index);
+            for (Node<E> node : order) {
+                node.keys = Arrays.copyOf(node.keys, indexes.size());
+                index.add(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this;
+    }
+
+    @Nonnull
+    private static String[] decodePointer(@Nonnull String pointer) {
+        if (JsonPointer.from(pointer).isRootPointer()) {
+            throw new IllegalArgumentException("The root pointer could not be indexed");
+        }
+        // JsonPointer.from has validated the pointer, which starts with a slash
+        String[] steps = pointer.substring(1).split("/", -1);
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = steps[i].replace("~1", "/").replace("~0", "~");
+        }
+        return steps;
+    }
+
+    /**
+     * @return whether the entity is added, false if it is already in the collection.
+     */
+    public boolean add(@Nonnull E entity) {
+        lock.writeLock().lock();
+        try {
+            return addNode(entity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add the entities in bulk, holding the write lock once.
+     */
+    public void addAll(@Nonnull Iterable<? extends E> entities) {
+        lock.writeLock().lock();
+        try {
+            for (E entity : entities) {
+                addNode(entity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean addNode(@Nonnull E entity) {
+        if (nodes.containsKey(entity)) {
+            return false;
+        }
+        Node<E> node = new Node<>(entity, indexes.size());
+        nodes.put(entity, node);
+        order.add(node);
+        for (Index index : indexes.values()) {
+            index.add(node);
+        }
+        snapshot = null;
+        return true;
+    }
+
+    /**
+     * @return whether the entity is removed, false if it is not in the collection.
+     */
+    public boolean remove(@Nonnull E entity) {
+        lock.writeLock().lock();
+        try {
+            Node<E> node = nodes.remove(entity);
+            if (node == null) {
+                return false;
+            }
+            removeNode(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the count of the entities removed.
+     */
+    public int removeIf(@Nonnull Predicate<? super E> filter) {
+        lock.writeLock().lock();
+        try {
+            List<Node<E>> removed = new ArrayList<>();
+            for (Node<E> node : order) {
+                if (filter.test(node.entity)) {
+                    removed.add(node);
+                }
+            }
+            for (Node<E> node : removed) {
+                nodes.remove(node.entity);
+                removeNode(node);
+            }
+            return removed.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeNode(@Nonnull Node<E> node) {
+        order.remove(node);
+        for (Index index : indexes.values()) {
+            index.remove(node);
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Read the keys of the entity again, after it is modified on the indexed paths.
+     *
+     * @return whether the entity is in the collection.
+     */
+    public boolean reindex(@Nonnull E entity) {
+        lock.writeLock().lock();
+        try {
+            Node<E> node = nodes.get(entity);
+            if (node == null) {
+                return false;
+            }
+            for (Index index : indexes.values()) {
+                index.remove(node);
+                index.add(node);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            nodes.clear();
+            order.clear();
+            for (Index index : indexes.values()) {
+                index.postings.clear();
+            }
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(@Nonnull E entity) {
+        lock.readLock().lock();
+        try {
+            return nodes.containsKey(entity);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the entities whose keys in the index equal the values.
+     * @throws IllegalArgumentException if the index is not declared, or the count of the values does not match it
+     */
+    @Nonnull
+    public List<E> findEqual(@Nonnull String indexName, @Nonnull Object... values) {
+        lock.readLock().lock();
+        try {
+            Index index = index(indexName);
+            if (values.length != index.paths.length) {
+                throw new IllegalArgumentException("The index " + indexName + " has " + index.paths.length + " parts");
+            }
+            CompositeKey key = CompositeKey.of(values, 0);
+            if (key == null) {
+                return List.of();
+            }
+            Set<Node<E>> posting = index.postings.get(key);
+            return posting == null ? List.of() : entities(posting, new ArrayList<>(posting.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the entities whose keys in the sorted index start with the values, in the order of the keys.
+     */
+    @Nonnull
+    public List<E> findByLeadingValues(@Nonnull String indexName, @Nonnull Object... leadingValues) {
+        return findRange(indexName, leadingValues, true, leadingValues, true);
+    }
+
+    /**
+     * Find the entities whose keys in the sorted index are in the range, in the order of the keys. A bound might be
+     * leading parts of the key, to compare with the same leading parts of the keys.
+     *
+     * @param from          the lower bound, or null for no lower bound
+     * @param fromInclusive whether the keys equal to the lower bound are included
+     * @param to            the upper bound, or null for no upper bound
+     * @param toInclusive   whether the keys equal to the upper bound are included
+     * @throws IllegalArgumentException if the index is not declared or not sorted
+     */
+    @Nonnull
+    public List<E> findRange(
+            @Nonnull String indexName,
+            @Nullable Object[] from, boolean fromInclusive,
+            @Nullable Object[] to, boolean toInclusive
+    ) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<CompositeKey, Set<Node<E>>> sorted = sorted(indexName);
+            NavigableMap<CompositeKey, Set<Node<E>>> range = sorted;
+            if (from != null) {
+                CompositeKey lower = CompositeKey.of(from, fromInclusive ? -1 : 1);
+                if (lower == null) {
+                    return List.of();
+                }
+                range = range.tailMap(lower, true);
+            }
+            if (to != null) {
+                CompositeKey upper = CompositeKey.of(to, toInclusive ? 1 : -1);
+                if (upper == null) {
+                    return List.of();
+                }
+                range = range.headMap(upper, true);
+            }
+            List<E> result = new ArrayList<>();
+            for (Set<Node<E>> posting : range.values()) {
+                entities(posting, result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the entities whose keys in the sorted index have a string starting with the prefix, right after the
+     * leading values, in the order of the keys.
+     *
+     * @param prefix        the prefix of the string part of the key
+     * @param leadingValues the values of the parts of the key before the string part
+     */
+    @Nonnull
+    public List<E> findByStringPrefix(@Nonnull String indexName, @Nonnull String prefix, @Nonnull Object... leadingValues) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<CompositeKey, Set<Node<E>>> sorted = sorted(indexName);
+            Object[] bound = Arrays.copyOf(leadingValues, leadingValues.length + 1);
+            bound[leadingValues.length] = prefix;
+            CompositeKey lower = CompositeKey.of(bound, -1);
+            if (lower == null) {
+                return List.of();
+            }
+            List<E> result = new ArrayList<>();
+            for (Map.Entry<CompositeKey, Set<Node<E>>> entry : sorted.tailMap(lower, true).entrySet()) {
+                if (!lower.isPrefixedBy(entry.getKey())) {
+                    break;
+                }
+                entities(entry.getValue(), result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Nonnull
+    private Index index(@Nonnull String indexName) {
+        Index index = indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("The index " + indexName + " is not declared");
+        }
+        return index;
+    }
+
+    @Nonnull
+    private NavigableMap<CompositeKey, Set<Node<E>>> sorted(@Nonnull String indexName) {
+        Index index = index(indexName);
+        if (!(index.postings instanceof NavigableMap)) {
+            throw new IllegalArgumentException("The index " + indexName + " is not sorted");
+        }
+        return (NavigableMap<CompositeKey, Set<Node<E>>>) index.postings;
+    }
+
+    @Nonnull
+    private static <E> List<E> entities(@Nonnull Set<Node<E>> posting, @Nonnull List<E> result) {
+        for (Node<E> node : posting) {
+            result.add(node.entity);
+        }
+        return result;
+    }
+
+    /**
+     * @return an unmodifiable snapshot of the entities in the order of being added, shared until the next write.
+     */
+    @Nonnull
+    public List<E> snapshot() {
+        List<E> list = snapshot;
+        if (list != null) {
+            return list;
+        }
+        lock.readLock().lock();
+        try {
+            List<E> entities = new ArrayList<>(order.size());
+            for (Node<E> node : order) {
+                entities.add(node.entity);
+            }
+            list = Collections.unmodifiableList(entities);
+            snapshot = list;
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the iterator over {@link #snapshot()}, not affected by the writes after.
+     */
+    @Nonnull
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * The types of the indexes.
+     */
+    public enum IndexType {
+        /**
+         * Finds by the whole key only.
+         */
+        HASH,
+        /**
+         * Finds by the whole key, leading parts of the key, ranges and string prefixes, in the order of the keys.
+         */
+        SORTED
+    }
+
+    private static final class Node<E> {
+        private final E entity;
+        /**
+         * The key of the entity in each index by position, null if left out of the index.
+         */
+        private CompositeKey[] keys;
+
+        private Node(@Nonnull E entity, int indexCount) {
+            this.entity = entity;
+            this.keys = new CompositeKey[indexCount];
+        }
+    }
+
+    private final class Index {
+        private final int position;
+        private final String[][] paths;
+        private final Map<CompositeKey, Set<Node<E>>> postings;
+
+        private Index(int position, @Nonnull String[][] paths, @Nonnull Map<CompositeKey, Set<Node<E>>> postings) {
+            this.position = position;
+            this.paths = paths;
+            this.postings = postings;
+        }
+
+        private void add(@Nonnull Node<E> node) {
+            Object[] values = new Object[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                values[i] = readPath(node.entity, paths[i]);
+            }
+            CompositeKey key = CompositeKey.of(values, 0);
+            node.keys[position] = key;
+            if (key != null) {
+                postings.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(node);
+            }
+        }
+
+        private void remove(@Nonnull Node<E> node) {
+            CompositeKey key = node.keys[position];
+            if (key == null) {
+                return;
+            }
+            Set<Node<E>> posting = postings.get(key);
+            if (posting != null && posting.remove(node) && posting.isEmpty()) {
+                postings.remove(key);
+            }
+            node.keys[position] = null;
+        }
+
+        /**
+         * Step from the top-level entry along the path, as the JSON Pointer would, without building one per entity.
+         */
+        @Nullable
+        private Object readPath(@Nonnull E entity, @Nonnull String[] path) {
+            Object value = entity.readEntry(path[0]);
+            for (int i = 1; i < path.length && value != null; i++) {
+                value = JsonPointerSteps.step(value, path[i]);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A key of the values on the paths of an index, or a bound of leading values to look up a sorted index with.
+     */
+    private static final class CompositeKey implements Comparable<CompositeKey> {
+        private final Object[] values;
+        /**
+         * For a bound, -1 to come before all the keys starting with the values, 1 to come after them; 0 for a key.
+         */
+        private final int bound;
+        private final int hash;
+
+        private CompositeKey(@Nonnull Object[] values, int bound) {
+            this.values = values;
+            this.bound = bound;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        /**
+         * @return the key of the normalized values, or null if any value could not be indexed.
+         */
+        @Nullable
+        private static CompositeKey of(@Nonnull Object[] values, int bound) {
+            Object[] normalized = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Object value = normalize(values[i]);
+                if (value == null) {
+                    return null;
+                }
+                normalized[i] = value;
+            }
+            return new CompositeKey(normalized, bound);
+        }
+
+        /**
+         * @return the number as {@link Long} if integral in its range, otherwise as {@link Double}; the string or the
+         *         boolean as is; or null if not a scalar.
+         */
+        @Nullable
+        private static Object normalize(@Nullable Object value) {
+            if (value instanceof String || value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof Number) {
+                if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+                    return ((BigInteger) value).longValue();
+                }
+                if (value instanceof BigDecimal) {
+                    try {
+                        return ((BigDecimal) value).longValueExact();
+                    } catch (ArithmeticException e) {
+                        return ((BigDecimal) value).doubleValue();
+                    }
+                }
+                double d = ((Number) value).doubleValue();
+                if (d == Math.rint(d) && d >= Long.MIN_VALUE && d < 0x1p63) {
+                    return (long) d;
+                }
+                return d;
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the key starts with the values of this bound, where the last value is a string prefix.
+         */
+        private boolean isPrefixedBy(@Nonnull CompositeKey key) {
+            if (key.values.length < values.length) {
+                return false;
+            }
+            int last = values.length - 1;
+            for (int i = 0; i < last; i++) {
+                if (compareValues(values[i], key.values[i]) != 0) {
+                    return false;
+                }
+            }
+            return key.values[last] instanceof String && ((String) key.values[last]).startsWith((String) values[last]);
+        }
+
+        @Override
+        public int compareTo(@Nonnull CompositeKey other) {
+            int common = Math.min(values.length, other.values.length);
+            for (int i = 0; i < common; i++) {
+                int c = compareValues(values[i], other.values[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            if (values.length == other.values.length) {
+                return Integer.compare(bound, other.bound);
+            }
+            // the shorter one is a bound of leading values
+            return values.length < other.values.length ? (bound > 0 ? 1 : -1) : (other.bound > 0 ? -1 : 1);
+        }
+
+        private static int compareValues(@Nonnull Object a, @Nonnull Object b) {
+            int ra = rank(a);
+            int rb = rank(b);
+            if (ra != rb) {
+                return Integer.compare(ra, rb);
+            }
+            if (a instanceof String) {
+                return ((String) a).compareTo((String) b);
+            }
+            if (a instanceof Boolean) {
+                return Boolean.compare((Boolean) a, (Boolean) b);
+            }
+            if (a instanceof Long && b instanceof Long) {
+                return Long.compare((Long) a, (Long) b);
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+
+        private static int rank(@Nonnull Object value) {
+            return value instanceof Boolean ? 0 : value instanceof Number ? 1 : 2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CompositeKey)) {
+                return false;
+            }
+            CompositeKey other = (CompositeKey) o;
+            return bound == other.bound && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.sinri.keel.core.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.json.EncodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.core.json.jackson.JacksonCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a JSON value as UTF-8 bytes straight into a {@link Buffer} or a Netty {@link ByteBuf}, without the
+ * intermediate {@link String} or encoded buffer of {@link JsonObject#encode()} and {@link JsonObject#toBuffer()}.
+ * <p>
+ * The JSON values of Vert.x are written as Vert.x writes them; a nested {@link JsonSerializable} is written in place,
+ * as its {@link JsonObjectConvertible#toJsonObject()} if available, otherwise as its raw JSON expression; other values
+ * are written with the Jackson Databind mapper of Vert.x.
+ * <p>
+ * The framed form, as {@link io.vertx.core.shareddata.ClusterSerializable#writeToBuffer(Buffer)} of
+ * {@link JsonObject}, is {@code [int length][UTF-8 JSON]}.
+ * <p>
+ * The JSON is written straight into the byte buffer, with the length prefix of a frame reserved first and filled after
+ * the JSON is written; a {@link Buffer} of Vert.x is written through its backing {@link ByteBuf}. Only into a
+ * {@link Buffer} of another implementation, the JSON is encoded into a scratch byte buffer reused per thread, then
+ * appended at once. Either way, if the encoding fails, nothing is left in the buffer.
+ *
+ * @since 5.0.0
+ */
+public final class JsonBufferEncoder {
+    private static final JsonFactory factory = new JsonFactory();
+    private static final int SCRATCH_INITIAL_CAPACITY = 8192;
+    /**
+     * A scratch grown beyond this is dropped after use, not to keep a huge one per thread.
+     */
+    private static final int SCRATCH_RETAINED_CAPACITY = 1024 * 1024;
+    /**
+     * The idle scratch of each thread, or null if it is in use.
+     */
+    private static final ThreadLocal<ByteBuf[]> scratches = ThreadLocal.withInitial(() -> new ByteBuf[1]);
+
+    private JsonBufferEncoder() {
+    }
+
+    /**
+     * Append the JSON expression of the value to the buffer.
+     *
+     * @throws EncodeException if failed to encode
+     */
+    public static void encode(@Nullable Object value, @Nonnull Buffer buffer) {
+        ByteBuf byteBuf = backingByteBuf(buffer);
+        if (byteBuf != null) {
+            encode(value, byteBuf);
+            return;
+        }
+        ByteBuf scratch = acquireScratch();
+        try {
+            encode(value, new ByteBufOutputStream(scratch));
+            appendScratch(scratch, buffer);
+        } finally {
+            releaseScratch(scratch);
+        }
+    }
+
+    /**
+     * Write the JSON expression of the value into the byte buffer, such as a pooled one, from its writer index.
+     *
+     * @throws EncodeException if failed to encode
+     */
+    public static void encode(@Nullable Object value, @Nonnull ByteBuf byteBuf) {
+        int writerIndex = byteBuf.writerIndex();
+        try {
+            encode(value, new ByteBufOutputStream(byteBuf));
+        } catch (RuntimeException e) {
+            byteBuf.writerIndex(writerIndex);
+            throw e;
+        }
+    }
+
+    /**
+     * Append the value to the buffer in the framed form {@code [int length][UTF-8 JSON]}.
+     *
+     * @throws EncodeException if failed to encode
+     */
+    public static void writeFramed(@Nullable Object value, @Nonnull Buffer buffer) {
+        ByteBuf byteBuf = backingByteBuf(buffer);
+        if (byteBuf != null) {
+            writeFramed(value, byteBuf);
+            return;
+        }
+        ByteBuf scratch = acquireScratch();
+        try {
+            encode(value, new ByteBufOutputStream(scratch));
+            buffer.appendInt(scratch.readableBytes());
+            appendScratch(scratch, buffer);
+        } finally {
+            releaseScratch(scratch);
+        }
+    }
+
+    /**
+     * Write the value into the byte buffer in the framed form {@code [int length][UTF-8 JSON]}.
+     *
+     * @throws EncodeException if failed to encode
+     */
+    public static void writeFramed(@Nullable Object value, @Nonnull ByteBuf byteBuf) {
+        int lengthPosition = byteBuf.writerIndex();
+        byteBuf.writeInt(0);
+        try {
+            encode(value, new ByteBufOutputStream(byteBuf));
+        } catch (RuntimeException e) {
+            byteBuf.writerIndex(lengthPosition);
+            throw e;
+        }
+        byteBuf.setInt(lengthPosition, byteBuf.writerIndex() - lengthPosition - 4);
+    }
+
+    /**
+     * @return the live byte buffer backing the buffer of Vert.x, whose writer index is the end of the buffer; or null
+     *         for a buffer of another implementation.
+     */
+    @Nullable
+    static ByteBuf backingByteBuf(@Nonnull Buffer buffer) {
+        return buffer instanceof BufferImpl ? ((BufferImpl) buffer).byteBuf() : null;
+    }
+
+    /**
+     * @return the idle scratch of the thread cleared, or a new one if it is in use, as by a nested encoding.
+     */
+    @Nonnull
+    static ByteBuf acquireScratch() {
+        ByteBuf[] slot = scratches.get();
+        ByteBuf scratch = slot[0];
+        if (scratch == null) {
+            return Unpooled.buffer(SCRATCH_INITIAL_CAPACITY);
+        }
+        slot[0] = null;
+        return scratch.clear();
+    }
+
+    static void releaseScratch(@Nonnull ByteBuf scratch) {
+        if (scratch.capacity() <= SCRATCH_RETAINED_CAPACITY) {
+            scratches.get()[0] = scratch;
+        }
+    }
+
+    static void appendScratch(@Nonnull ByteBuf scratch, @Nonnull Buffer buffer) {
+        buffer.appendBytes(scratch.array(), scratch.arrayOffset() + scratch.readerIndex(), scratch.readableBytes());
+    }
+
+    /**
+     * Write the JSON expression of the value into the output stream, which is closed once done.
+     *
+     * @throws EncodeException if failed to encode
+     * @since 5.0.0
+     */
+    public static void encode(@Nullable Object value, @Nonnull OutputStream outputStream) {
+        try (JsonGenerator generator = factory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            writeValue(value, generator);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Write the value with the generator, in the way of this encoder.
+     */
+    public static void writeValue(@Nullable Object value, @Nonnull JsonGenerator generator) throws IOException {
+        if (writeCommonScalar(value, generator)) {
+            return;
+        }
+        if (value instanceof JsonObject) {
+            value = ((JsonObject) value).getMap();
+        } else if (value instanceof JsonArray) {
+            value = ((JsonArray) value).getList();
+        }
+
+        if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                generator.writeFieldName((String) entry.getKey());
+                writeValue(entry.getValue(), generator);
+            }
+            generator.writeEndObject();
+        } else if (value instanceof List) {
+            generator.writeStartArray();
+            for (Object item : (List<?>) value) {
+                writeValue(item, generator);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof JsonObjectConvertible) {
+            writeValue(((JsonObjectConvertible) value).toJsonObject(), generator);
+        } else if (value instanceof JsonSerializable) {
+            generator.writeRawValue(((JsonSerializable) value).toJsonExpression());
+        } else if (isVertxScalar(value)) {
+            JacksonCodec.encodeJson(value, generator);
+        } else {
+            DatabindCodec.mapper().writeValue(generator, value);
+        }
+    }
+
+    /**
+     * Write the most common scalars as Vert.x writes them, checked by the exact classes, which is much cheaper than
+     * the failed checks against interfaces in the general path.
+     *
+     * @return whether the value is written.
+     */
+    private static boolean writeCommonScalar(@Nullable Object value, @Nonnull JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return true;
+        }
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            generator.writeString((String) value);
+        } else if (type == Integer.class) {
+            generator.writeNumber((Integer) value);
+        } else if (type == Long.class) {
+            generator.writeNumber((Long) value);
+        } else if (type == Double.class) {
+            generator.writeNumber((Double) value);
+        } else if (type == Boolean.class) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the value is a scalar Vert.x could encode without Jackson Databind.
+     */
+    private static boolean isVertxScalar(@Nullable Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Number
+                || value instanceof Boolean
+                || value instanceof Instant
+                || value instanceof byte[]
+                || value instanceof Buffer
+                || value instanceof Enum;
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.sinri.keel.core.json;
+
+/**
+ * The mode to convert a value read from JSON into the expected type, for
+ * {@link JsonObjectReadable#readChecked(Class, JsonCoercion, String...)}.
+ *
+ * @since 5.0.0
+ */
+public enum JsonCoercion {
+    /**
+     * Only a value of the expected type is accepted; as the {@code readX} methods, a number is converted to the
+     * expected numeric type.
+     */
+    STRICT,
+    /**
+     * Besides {@link #STRICT}, a string of a number is read as the expected numeric type, a string of {@code true} or
+     * {@code false} (case-insensitive) as a boolean, and a number or a boolean as a string.
+     * <p>
+     * A string of an integer is accepted for an integral type only within its range; a string of a decimal is not
+     * accepted for an integral type.
+     */
+    LENIENT
+}
@@ -0,0 +1,162 @@
+package io.github.sinri.keel.core.json;
+
+import jdk.jfr.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The events of {@link JsonFlightRecorder}, holding all the types of {@code jdk.jfr}, so that they are loaded only if
+ * the module is in the runtime.
+ *
+ * @since 5.0.0
+ */
+final class JsonFlightEvents {
+    private JsonFlightEvents() {
+    }
+
+    /**
+     * Track whether a recording is running, into {@link JsonFlightRecorder#recording}.
+     */
+    static void install() {
+        try {
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording changed) {
+                    JsonFlightRecorder.recording = anyRecordingRunning();
+                }
+            });
+            // the recordings started before, such as by -XX:StartFlightRecording
+            if (FlightRecorder.isInitialized()) {
+                JsonFlightRecorder.recording = anyRecordingRunning();
+            }
+        } catch (LinkageError | SecurityException e) {
+            // without the permission, no event is recorded
+        }
+    }
+
+    private static boolean anyRecordingRunning() {
+        for (Recording each : FlightRecorder.getFlightRecorder().getRecordings()) {
+            if (each.getState() == RecordingState.RUNNING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    static Object beginEncode() {
+        return begin(new EncodeEvent());
+    }
+
+    @Nullable
+    static Object beginWriteToBuffer() {
+        return begin(new WriteToBufferEvent());
+    }
+
+    @Nullable
+    static Object beginReadFromBuffer() {
+        return begin(new ReadFromBufferEvent());
+    }
+
+    @Nullable
+    static Object beginClone() {
+        return begin(new CloneEvent());
+    }
+
+    @Nullable
+    static Object beginSerialize() {
+        return begin(new SerializeEvent());
+    }
+
+    @Nullable
+    static Object beginWrapThrowable() {
+        return begin(new WrapThrowableEvent());
+    }
+
+    @Nullable
+    private static Object begin(@Nonnull JsonEvent event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.startNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    static void commit(@Nonnull Object token, @Nonnull Class<?> entityClass, long size) {
+        JsonEvent event = (JsonEvent) token;
+        event.end();
+        long nanos = System.nanoTime() - event.startNanos;
+        if ((nanos >= JsonFlightRecorder.durationThresholdNanos || size >= JsonFlightRecorder.sizeThreshold)
+                && event.shouldCommit()) {
+            event.entityClass = entityClass;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    static void commitEstimated(@Nonnull Object token, @Nonnull Class<?> entityClass, @Nullable Object value) {
+        JsonEvent event = (JsonEvent) token;
+        event.end();
+        long nanos = System.nanoTime() - event.startNanos;
+        long threshold = JsonFlightRecorder.sizeThreshold;
+        if (nanos < JsonFlightRecorder.durationThresholdNanos && JsonOffloading.estimateSize(value, threshold) < threshold) {
+            return;
+        }
+        if (event.shouldCommit()) {
+            event.entityClass = entityClass;
+            event.size = JsonOffloading.estimateSize(value, Long.MAX_VALUE);
+            event.commit();
+        }
+    }
+
+    @Category({"Keel", "JSON"})
+    abstract static class JsonEvent extends Event {
+        @Label("Entity Class")
+        Class<?> entityClass;
+        @Label("Size")
+        @Description("The bytes or characters of the JSON, or 0 if unknown")
+        long size;
+        /**
+         * Not recorded, as a transient field.
+         */
+        transient long startNanos;
+    }
+
+    @Name("keel.json.Encode")
+    @Label("JSON Encode")
+    @Description("An entity encoded to its JSON expression")
+    public static final class EncodeEvent extends JsonEvent {
+    }
+
+    @Name("keel.json.WriteToBuffer")
+    @Label("JSON Write To Buffer")
+    @Description("An entity written into a buffer as a frame")
+    public static final class WriteToBufferEvent extends JsonEvent {
+    }
+
+    @Name("keel.json.ReadFromBuffer")
+    @Label("JSON Read From Buffer")
+    @Description("An entity reloaded from a frame in a buffer")
+    public static final class ReadFromBufferEvent extends JsonEvent {
+    }
+
+    @Name("keel.json.Clone")
+    @Label("JSON Clone")
+    @Description("An entity cloned as a JSON object")
+    public static final class CloneEvent extends JsonEvent {
+    }
+
+    @Name("keel.json.Serialize")
+    @Label("JSON Serialize")
+    @Description("An entity written by Jackson Databind")
+    public static final class SerializeEvent extends JsonEvent {
+    }
+
+    @Name("keel.json.WrapThrowable")
+    @Label("JSON Wrap Throwable")
+    @Description("A throwable wrapped with its causes, sized in the chained throwables")
+    public static final class WrapThrowableEvent extends JsonEvent {
+    }
+}
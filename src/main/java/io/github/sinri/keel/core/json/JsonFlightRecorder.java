@@ -0,0 +1,138 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Java Flight Recorder events of the JSON layer, at the sites instrumented by {@link JsonMetrics}, plus
+ * {@link JsonifiableSerializer} and {@link JsonifiedThrowable#wrap(Throwable)}:
+ * <ul>
+ *     <li>{@code keel.json.Encode}, {@link JsonSerializable#toJsonExpression()}, sized in characters;</li>
+ *     <li>{@code keel.json.WriteToBuffer} and {@code keel.json.ReadFromBuffer}, the frames of
+ *     {@link io.vertx.core.shareddata.ClusterSerializable}, sized in bytes;</li>
+ *     <li>{@code keel.json.Clone}, {@link UnmodifiableJsonifiableEntity#cloneAsJsonObject()}, sized in the
+ *     characters of the clone as estimated;</li>
+ *     <li>{@code keel.json.Serialize}, a {@link JsonSerializable} written by Jackson Databind, sized in the characters
+ *     of the value as estimated;</li>
+ *     <li>{@code keel.json.WrapThrowable}, {@link JsonifiedThrowable#wrap(Throwable)}, sized in the chained
+ *     throwables.</li>
+ * </ul>
+ * Each event carries the class of the entity, the size if known, and the duration with the stack trace; one is
+ * committed only if the operation is slow or large, as the thresholds tell, and the event type is enabled in the
+ * recording.
+ * <p>
+ * Whether a recording is running is tracked by a {@code jdk.jfr.FlightRecorderListener}, so that without a
+ * recording, each instrumented operation costs one read of a volatile flag, and no event is created.
+ * <p>
+ * The types of {@code jdk.jfr} are kept in {@link JsonFlightEvents}, loaded only if the module is in the runtime; on a
+ * runtime trimmed without it, nothing is recorded. The instrumented sites hold a begun event as an opaque token.
+ *
+ * @since 5.0.0
+ */
+public final class JsonFlightRecorder {
+    public static final Duration DEFAULT_DURATION_THRESHOLD = Duration.ofMillis(1);
+    public static final long DEFAULT_SIZE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Updated by {@link JsonFlightEvents} only, which is loaded if the module {@code jdk.jfr} is present.
+     */
+    static volatile boolean recording = false;
+    static volatile long durationThresholdNanos = DEFAULT_DURATION_THRESHOLD.toNanos();
+    static volatile long sizeThreshold = DEFAULT_SIZE_THRESHOLD;
+
+    static {
+        if (ModuleLayer.boot().findModule("jdk.jfr").isPresent()) {
+            JsonFlightEvents.install();
+        }
+    }
+
+    private JsonFlightRecorder() {
+    }
+
+    /**
+     * @return whether a recording is running.
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    @Nonnull
+    public static Duration getDurationThreshold() {
+        return Duration.ofNanos(durationThresholdNanos);
+    }
+
+    /**
+     * @param threshold an operation taking this long at least is recorded, whatever its size.
+     */
+    public static void setDurationThreshold(@Nonnull Duration threshold) {
+        durationThresholdNanos = threshold.toNanos();
+    }
+
+    public static long getSizeThreshold() {
+        return sizeThreshold;
+    }
+
+    /**
+     * @param threshold an operation of this size at least is recorded, however long it takes.
+     */
+    public static void setSizeThreshold(long threshold) {
+        sizeThreshold = threshold;
+    }
+
+    /**
+     * @return the token of the event begun, or null if not recorded.
+     */
+    @Nullable
+    static Object beginEncode() {
+        return recording ? JsonFlightEvents.beginEncode() : null;
+    }
+
+    @Nullable
+    static Object beginWriteToBuffer() {
+        return recording ? JsonFlightEvents.beginWriteToBuffer() : null;
+    }
+
+    @Nullable
+    static Object beginReadFromBuffer() {
+        return recording ? JsonFlightEvents.beginReadFromBuffer() : null;
+    }
+
+    @Nullable
+    static Object beginClone() {
+        return recording ? JsonFlightEvents.beginClone() : null;
+    }
+
+    @Nullable
+    static Object beginSerialize() {
+        return recording ? JsonFlightEvents.beginSerialize() : null;
+    }
+
+    @Nullable
+    static Object beginWrapThrowable() {
+        return recording ? JsonFlightEvents.beginWrapThrowable() : null;
+    }
+
+    /**
+     * End the event begun, and commit it if the operation is slow or large.
+     *
+     * @param event the token of the event begun, or null if not recorded
+     * @param size  the size of the operation, or 0 if unknown
+     */
+    static void commit(@Nullable Object event, @Nonnull Class<?> entityClass, long size) {
+        if (event != null) {
+            JsonFlightEvents.commit(event, entityClass, size);
+        }
+    }
+
+    /**
+     * As {@link #commit(Object, Class, long)}, with the size estimated from the JSON value of the operation, such as
+     * the clone, once the event is ended; so the estimation is not counted in the duration, and walks the whole value
+     * only if the event is to be committed.
+     */
+    static void commitEstimated(@Nullable Object event, @Nonnull Class<?> entityClass, @Nullable Object value) {
+        if (event != null) {
+            JsonFlightEvents.commitEstimated(event, entityClass, value);
+        }
+    }
+}
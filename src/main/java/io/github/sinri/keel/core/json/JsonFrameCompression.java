@@ -0,0 +1,254 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Options to compress the frames of {@link io.vertx.core.shareddata.ClusterSerializable#writeToBuffer}, as
+ * {@link JsonFrames} writes them, such as the data units replicated over a cluster.
+ * <p>
+ * A value with the estimated size below the threshold is framed uncompressed; a larger one is deflated, with the
+ * preset dictionary if given. A dictionary fits the records of one class, trained by
+ * {@link #trainDictionary(Iterable, int)} from sample records; the readers must have the same dictionary registered,
+ * found by its id, which is the Adler-32 checksum of its bytes as zlib takes.
+ * <p>
+ * The compression takes effect for a class once enabled by {@link #enable(Class, JsonFrameCompression)}, matched by
+ * the exact class of the data unit written; the options should not be changed after.
+ *
+ * @since 5.0.0
+ */
+public class JsonFrameCompression {
+    public static final int DEFAULT_THRESHOLD_BYTES = 1024;
+    public static final int DEFAULT_DICTIONARY_BYTES = 16 * 1024;
+
+    private static final Map<Class<?>, JsonFrameCompression> compressionByType = new ConcurrentHashMap<>();
+    private static final Map<Integer, byte[]> dictionaryById = new ConcurrentHashMap<>();
+
+    private int thresholdBytes = DEFAULT_THRESHOLD_BYTES;
+    private int level = Deflater.BEST_SPEED;
+    private @Nullable byte[] dictionary;
+    private int dictionaryId;
+
+    public JsonFrameCompression() {
+    }
+
+    /**
+     * Compress the frames written by the data units of the exact class, and register the dictionary of the options if
+     * any for reading.
+     *
+     * @throws IllegalStateException if another dictionary with the same id is registered
+     */
+    public static void enable(@Nonnull Class<?> type, @Nonnull JsonFrameCompression compression) {
+        byte[] dictionary = compression.getDictionary();
+        if (dictionary != null) {
+            registerDictionary(dictionary);
+        }
+        compressionByType.put(type, compression);
+    }
+
+    /**
+     * Stop compressing the frames written by the data units of the exact class; the frames written compressed still
+     * could be read.
+     */
+    public static void disable(@Nonnull Class<?> type) {
+        compressionByType.remove(type);
+    }
+
+    /**
+     * @return the compression enabled for the exact class, or null if none.
+     */
+    @Nullable
+    public static JsonFrameCompression forType(@Nonnull Class<?> type) {
+        return compressionByType.get(type);
+    }
+
+    /**
+     * Register the dictionary to read the frames compressed with it, as on a node only reading them; registering the
+     * same dictionary again takes no effect.
+     *
+     * @return the id of the dictionary
+     * @throws IllegalArgumentException if the id of the dictionary is 0, which stands for none
+     * @throws IllegalStateException    if another dictionary with the same id is registered
+     */
+    public static int registerDictionary(@Nonnull byte[] dictionary) {
+        int id = requireDictionaryId(dictionary);
+        byte[] registered = dictionaryById.putIfAbsent(id, dictionary.clone());
+        if (registered != null && !Arrays.equals(registered, dictionary)) {
+            throw new IllegalStateException("Another dictionary is registered with the same id: " + id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the registered dictionary of the id, or null if none.
+     */
+    @Nullable
+    static byte[] findDictionary(int id) {
+        return dictionaryById.get(id);
+    }
+
+    static int dictionaryId(@Nonnull byte[] dictionary) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary);
+        return (int) adler32.getValue();
+    }
+
+    private static int requireDictionaryId(@Nonnull byte[] dictionary) {
+        int id = dictionaryId(dictionary);
+        if (id == 0) {
+            throw new IllegalArgumentException("The id of the dictionary is 0, which stands for none; change it a little");
+        }
+        return id;
+    }
+
+    /**
+     * As {@link #trainDictionary(Iterable, int)}, up to {@link #DEFAULT_DICTIONARY_BYTES}.
+     */
+    @Nonnull
+    public static byte[] trainDictionary(@Nonnull Iterable<?> samples) {
+        return trainDictionary(samples, DEFAULT_DICTIONARY_BYTES);
+    }
+
+    /**
+     * Train a preset dictionary from sample records of one class, out of the pieces of JSON they repeat: the quoted
+     * keys with the colons, and the short string values. The pieces repeated most, weighted by their lengths, are put
+     * at the end, where the deflater reaches them with the shortest distances.
+     *
+     * @param samples  the sample records, as {@link JsonObject}s or {@link JsonObjectConvertible}s
+     * @param maxBytes the max size of the dictionary, up to the 32 KiB window of deflate
+     */
+    @Nonnull
+    public static byte[] trainDictionary(@Nonnull Iterable<?> samples, int maxBytes) {
+        if (maxBytes <= 0 || maxBytes > 32 * 1024) {
+            throw new IllegalArgumentException("maxBytes should be in (0, 32768]");
+        }
+        Map<String, int[]> counts = new HashMap<>();
+        int sampleCount = 0;
+        for (Object sample : samples) {
+            if (sample instanceof JsonObjectConvertible) {
+                sample = ((JsonObjectConvertible) sample).toJsonObject();
+            }
+            if (!(sample instanceof JsonObject)) {
+                throw new IllegalArgumentException("A sample is not a JSON object: " + sample);
+            }
+            collectPieces(((JsonObject) sample).getMap(), counts);
+            sampleCount++;
+        }
+        int minCount = sampleCount > 1 ? 2 : 1;
+        List<Map.Entry<String, int[]>> pieces = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] >= minCount) {
+                pieces.add(entry);
+            }
+        }
+        // the most valuable first, to be kept within the size
+        pieces.sort(Comparator.comparingLong((Map.Entry<String, int[]> e) -> -(long) e.getValue()[0] * e.getKey().length())
+                              .thenComparing(Map.Entry::getKey));
+        List<byte[]> kept = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, int[]> piece : pieces) {
+            byte[] bytes = piece.getKey().getBytes(StandardCharsets.UTF_8);
+            if (size + bytes.length > maxBytes) {
+                continue;
+            }
+            kept.add(bytes);
+            size += bytes.length;
+        }
+        byte[] dictionary = new byte[size];
+        int position = size;
+        for (byte[] bytes : kept) {
+            position -= bytes.length;
+            System.arraycopy(bytes, 0, dictionary, position, bytes.length);
+        }
+        return dictionary;
+    }
+
+    private static void collectPieces(@Nullable Object value, @Nonnull Map<String, int[]> counts) {
+        if (value instanceof JsonObject) {
+            value = ((JsonObject) value).getMap();
+        } else if (value instanceof JsonArray) {
+            value = ((JsonArray) value).getList();
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                count(Json.encode(entry.getKey()) + ":", counts);
+                collectPieces(entry.getValue(), counts);
+            }
+        } else if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                collectPieces(item, counts);
+            }
+        } else if (value instanceof String && ((String) value).length() <= 64) {
+            count(Json.encode(value), counts);
+        }
+    }
+
+    private static void count(@Nonnull String piece, @Nonnull Map<String, int[]> counts) {
+        counts.computeIfAbsent(piece, k -> new int[1])[0]++;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * @param thresholdBytes the estimated size in bytes below which a value is framed uncompressed.
+     */
+    public JsonFrameCompression setThresholdBytes(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+        return this;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param level the level of {@link Deflater}, from 0 to 9, or -1 for its default; {@link Deflater#BEST_SPEED} by
+     *              default.
+     */
+    public JsonFrameCompression setLevel(int level) {
+        if (level < -1 || level > 9) {
+            throw new IllegalArgumentException("level should be in [-1, 9]");
+        }
+        this.level = level;
+        return this;
+    }
+
+    @Nullable
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the id of the dictionary, or 0 if none.
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * @param dictionary the preset dictionary, such as one by {@link #trainDictionary(Iterable, int)}, or null for
+     *                   none.
+     * @throws IllegalArgumentException if the id of the dictionary is 0, which stands for none
+     */
+    public JsonFrameCompression setDictionary(@Nullable byte[] dictionary) {
+        if (dictionary == null || dictionary.length == 0) {
+            this.dictionary = null;
+            this.dictionaryId = 0;
+        } else {
+            this.dictionaryId = requireDictionaryId(dictionary);
+            this.dictionary = dictionary.clone();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.sinri.keel.core.json;
+
+import io.github.sinri.keel.utils.json.JsonParseBudget;
+import io.github.sinri.keel.utils.json.JsonParseBudgetExceededException;
+import io.github.sinri.keel.utils.json.JsonParseOptions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Writes and reads the frames of {@link io.vertx.core.shareddata.ClusterSerializable}, uncompressed or compressed as
+ * {@link JsonFrameCompression} tells.
+ * <p>
+ * An uncompressed frame is as {@link io.vertx.core.json.JsonObject#writeToBuffer(Buffer)} writes,
+ * {@code [int length][UTF-8 JSON]}. A compressed frame is flagged by a negative header,
+ * {@code [int -length][byte format][int raw length][int dictionary id][raw deflate stream]}, where the length counts
+ * the bytes after the header, and the dictionary id is 0 for none. The JSON is encoded straight into the deflater,
+ * which writes into a scratch byte buffer reused per thread, appended to the buffer once done; so if the encoding
+ * fails, nothing is left in the buffer.
+ * <p>
+ * The deflaters and inflaters are reused per thread. The raw length in the header of a compressed frame is trusted
+ * only within the ratio deflate could reach and {@link #MAX_RAW_BYTES}, and the bytes are inflated into an array
+ * growing as they come, so that a forged header costs no more memory than the bytes really inflated. With a
+ * {@link JsonParseBudget}, given or {@link JsonParseBudget#getDefault()} if set, a compressed frame is inflated only
+ * if its raw length is within the max bytes of the budget.
+ *
+ * @since 5.0.0
+ */
+public final class JsonFrames {
+    private static final byte FORMAT_DEFLATE = 1;
+    private static final int COMPRESSED_PREFIX_BYTES = 9;
+    /**
+     * The max ratio of the raw bytes to the compressed ones that deflate could reach, rounded up.
+     */
+    private static final int MAX_DEFLATE_RATIO = 1100;
+    /**
+     * The max raw bytes of a compressed frame, whatever its header tells.
+     */
+    public static final int MAX_RAW_BYTES = 256 * 1024 * 1024;
+    private static final int INITIAL_INFLATE_BYTES = 64 * 1024;
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private JsonFrames() {
+    }
+
+    /**
+     * Append the value to the buffer as a frame, compressed if the compression is given and the estimated size of the
+     * value reaches its threshold; a value encoded beyond {@link #MAX_RAW_BYTES} is written uncompressed, as no reader
+     * would inflate it.
+     *
+     * @throws io.vertx.core.json.EncodeException if failed to encode
+     */
+    public static void write(@Nullable Object value, @Nonnull Buffer buffer, @Nullable JsonFrameCompression compression) {
+        if (compression == null
+                || JsonOffloading.estimateSize(value, compression.getThresholdBytes()) < compression.getThresholdBytes()) {
+            JsonBufferEncoder.writeFramed(value, buffer);
+            return;
+        }
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setLevel(compression.getLevel());
+        byte[] dictionary = compression.getDictionary();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        // deflated into the scratch first, so that nothing is left in the buffer if the encoding fails
+        ByteBuf scratch = JsonBufferEncoder.acquireScratch();
+        try {
+            CountingOutputStream raw = new CountingOutputStream(
+                    new DeflaterOutputStream(new ByteBufOutputStream(scratch), deflater, 8192)
+            );
+            // the generator closes the stream once done, which finishes the deflater
+            JsonBufferEncoder.encode(value, raw);
+            if (raw.count > MAX_RAW_BYTES) {
+                // beyond what a reader would inflate, so written uncompressed instead
+                JsonBufferEncoder.writeFramed(value, buffer);
+                return;
+            }
+
+            buffer.appendInt(-(COMPRESSED_PREFIX_BYTES + scratch.readableBytes()))
+                  .appendByte(FORMAT_DEFLATE)
+                  .appendInt(Math.toIntExact(raw.count))
+                  .appendInt(compression.getDictionaryId());
+            JsonBufferEncoder.appendScratch(scratch, buffer);
+        } finally {
+            JsonBufferEncoder.releaseScratch(scratch);
+        }
+    }
+
+    /**
+     * @return whether the frame at the position is compressed.
+     */
+    public static boolean isCompressed(int pos, @Nonnull Buffer buffer) {
+        return buffer.getInt(pos) < 0;
+    }
+
+    /**
+     * @return the count of the bytes of the frame at the position, including the header.
+     */
+    public static int frameLength(int pos, @Nonnull Buffer buffer) {
+        int header = buffer.getInt(pos);
+        return 4 + (header >= 0 ? header : -header);
+    }
+
+    /**
+     * Read the UTF-8 JSON of the frame at the position, as a slice of the buffer if uncompressed, otherwise inflated
+     * into a new buffer.
+     *
+     * @throws DecodeException if the frame is compressed in an unknown format, with an unregistered dictionary, or
+     *                         corrupted, including a raw length beyond what the compressed bytes could inflate to;
+     *                         or {@link JsonParseBudgetExceededException} if its raw length is beyond
+     *                         {@link JsonParseBudget#getDefault()}
+     */
+    @Nonnull
+    public static Buffer readJson(int pos, @Nonnull Buffer buffer) {
+        return readJson(pos, buffer, JsonParseBudget.getDefault());
+    }
+
+    /**
+     * As {@link #readJson(int, Buffer)}, with a compressed frame inflated only if its raw length is within the max
+     * bytes of the given budget, such as {@link JsonParseOptions#getEffectiveBudget()}.
+     *
+     * @param budget the budget to admit the raw length with, or null for none
+     */
+    @Nonnull
+    public static Buffer readJson(int pos, @Nonnull Buffer buffer, @Nullable JsonParseBudget budget) {
+        int header = buffer.getInt(pos);
+        int start = pos + 4;
+        if (header >= 0) {
+            return buffer.slice(start, start + header);
+        }
+        int end = start - header;
+        if (header == Integer.MIN_VALUE || end > buffer.length() || end - start < COMPRESSED_PREFIX_BYTES) {
+            throw new DecodeException("The compressed frame is corrupted: length " + header);
+        }
+        byte format = buffer.getByte(start);
+        if (format != FORMAT_DEFLATE) {
+            throw new DecodeException("Unknown format of the compressed frame: " + format);
+        }
+        int rawLength = buffer.getInt(start + 1);
+        int dictionaryId = buffer.getInt(start + 5);
+        long compressedLength = end - start - COMPRESSED_PREFIX_BYTES;
+        if (rawLength < 0 || rawLength > MAX_RAW_BYTES || rawLength > compressedLength * MAX_DEFLATE_RATIO) {
+            throw new DecodeException("The compressed frame is corrupted: raw length " + rawLength
+                    + " of " + compressedLength + " compressed bytes");
+        }
+        if (budget != null) {
+            budget.checkBytes(rawLength);
+        }
+
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        if (dictionaryId != 0) {
+            byte[] dictionary = JsonFrameCompression.findDictionary(dictionaryId);
+            if (dictionary == null) {
+                throw new DecodeException("The dictionary of the compressed frame is not registered: " + dictionaryId);
+            }
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(buffer.getBytes(start + COMPRESSED_PREFIX_BYTES, end));
+        byte[] json = new byte[Math.min(rawLength, INITIAL_INFLATE_BYTES)];
+        int inflated = 0;
+        try {
+            while (inflated < rawLength) {
+                if (inflated == json.length) {
+                    json = Arrays.copyOf(json, (int) Math.min(rawLength, 2L * json.length));
+                }
+                int count = inflater.inflate(json, inflated, json.length - inflated);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new DecodeException("The compressed frame is corrupted: " + e.getMessage(), e);
+        }
+        if (inflated != rawLength) {
+            throw new DecodeException("The compressed frame is truncated: " + inflated + " of " + rawLength + " bytes");
+        }
+        return Buffer.buffer(json);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count = 0;
+
+        private CountingOutputStream(@Nonnull OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package io.github.sinri.keel.core.json;
+
+import io.github.sinri.keel.utils.json.JsonParseBudget;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in instrumentation of the JSON layer, counting and timing the work per concrete class of the entities:
+ * <ul>
+ *     <li>reads through JSON Pointer, as hits, misses and type mismatches;</li>
+ *     <li>{@link JsonSerializable#toJsonExpression()}, in characters and time;</li>
+ *     <li>{@link io.vertx.core.shareddata.ClusterSerializable#writeToBuffer(io.vertx.core.buffer.Buffer)} and
+ *     {@link io.vertx.core.shareddata.ClusterSerializable#readFromBuffer(int, io.vertx.core.buffer.Buffer)}, in bytes
+ *     and time, with the frames failed on the limits of {@link JsonParseBudget};</li>
+ *     <li>{@link UnmodifiableJsonifiableEntity#cloneAsJsonObject()}, in time.</li>
+ * </ul>
+ * It is disabled by default; when disabled, and no flight recording is running for the events of
+ * {@link JsonFlightRecorder}, each instrumented operation costs the reads of two volatile flags.
+ * When enabled, the counters are striped {@link LongAdder}s, found per class through a {@link ClassValue}.
+ * <p>
+ * Register a {@link JsonMetricsExporter} to bridge the counters into a metrics stack, and call {@link #export()}
+ * periodically.
+ *
+ * @since 5.0.0
+ */
+public final class JsonMetrics {
+    private static final ConcurrentHashMap<Class<?>, ClassMetrics> registry = new ConcurrentHashMap<>();
+    private static final ClassValue<ClassMetrics> classMetrics = new ClassValue<>() {
+        @Override
+        protected ClassMetrics computeValue(Class<?> type) {
+            return registry.computeIfAbsent(type, ClassMetrics::new);
+        }
+    };
+    private static final List<JsonMetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    private static volatile boolean enabled = false;
+
+    private JsonMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * @return the counters of the class, created if absent.
+     */
+    @Nonnull
+    public static ClassMetrics of(@Nonnull Class<?> type) {
+        return classMetrics.get(type);
+    }
+
+    /**
+     * @return the snapshots of the counters of all the classes recorded, keyed by class.
+     */
+    @Nonnull
+    public static Map<Class<?>, Snapshot> snapshot() {
+        Map<Class<?>, Snapshot> map = new LinkedHashMap<>();
+        registry.forEach((type, metrics) -> map.put(type, metrics.snapshot()));
+        return map;
+    }
+
+    /**
+     * Reset the counters of all the classes to zero.
+     */
+    public static void reset() {
+        registry.values().forEach(ClassMetrics::reset);
+    }
+
+    public static void addExporter(@Nonnull JsonMetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public static void removeExporter(@Nonnull JsonMetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * Export the current snapshots to all the registered exporters.
+     */
+    public static void export() {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        Map<Class<?>, Snapshot> snapshots = Collections.unmodifiableMap(snapshot());
+        for (JsonMetricsExporter exporter : exporters) {
+            exporter.export(snapshots);
+        }
+    }
+
+    /**
+     * Finish a read through JSON Pointer of the owner: the value found is returned if it is of the type, otherwise
+     * null.
+     */
+    @Nullable
+    static <T> T castRead(@Nonnull Object owner, @Nullable Object value, @Nonnull Class<T> type) {
+        if (value == null) {
+            if (enabled) {
+                of(owner.getClass()).recordRead(ReadOutcome.MISS);
+            }
+            return null;
+        }
+        if (type.isInstance(value)) {
+            if (enabled) {
+                of(owner.getClass()).recordRead(ReadOutcome.HIT);
+            }
+            return type.cast(value);
+        }
+        if (enabled) {
+            of(owner.getClass()).recordRead(ReadOutcome.TYPE_MISMATCH);
+        }
+        return null;
+    }
+
+    /**
+     * Encode the JSON object as the JSON expression of the owner.
+     */
+    @Nonnull
+    static String encode(@Nonnull Object owner, @Nonnull JsonObject jsonObject) {
+        Object event = JsonFlightRecorder.beginEncode();
+        if (!enabled && event == null) {
+            return jsonObject.encode();
+        }
+        long start = System.nanoTime();
+        String expression = jsonObject.encode();
+        if (enabled) {
+            of(owner.getClass()).recordEncode(expression.length(), System.nanoTime() - start);
+        }
+        JsonFlightRecorder.commit(event, owner.getClass(), expression.length());
+        return expression;
+    }
+
+    /**
+     * Write the JSON object into the buffer as the serialized form of the owner, in the format of
+     * {@link JsonObject#writeToBuffer(Buffer)}, or compressed if enabled for the class of the owner as
+     * {@link JsonFrames} writes.
+     */
+    static void writeToBuffer(@Nonnull Object owner, @Nonnull JsonObject jsonObject, @Nonnull Buffer buffer) {
+        JsonFrameCompression compression = JsonFrameCompression.forType(owner.getClass());
+        Object event = JsonFlightRecorder.beginWriteToBuffer();
+        if (!enabled && event == null) {
+            JsonFrames.write(jsonObject, buffer, compression);
+            return;
+        }
+        long start = System.nanoTime();
+        int before = buffer.length();
+        JsonFrames.write(jsonObject, buffer, compression);
+        if (enabled) {
+            of(owner.getClass()).recordWriteToBuffer(buffer.length() - before, System.nanoTime() - start);
+        }
+        JsonFlightRecorder.commit(event, owner.getClass(), buffer.length() - before);
+    }
+
+    /**
+     * Record the reading of a frame by the owner, begun at the time with the event if any, as
+     * {@link io.vertx.core.shareddata.ClusterSerializable#readFromBuffer(int, Buffer)}.
+     */
+    static void recordReadFromBuffer(@Nonnull Object owner, @Nullable Object event, long start, long bytes) {
+        if (enabled) {
+            of(owner.getClass()).recordReadFromBuffer(bytes, System.nanoTime() - start);
+        }
+        JsonFlightRecorder.commit(event, owner.getClass(), bytes);
+    }
+
+    /**
+     * Record a frame failed to read by the owner on a limit of {@link JsonParseBudget}.
+     */
+    static void recordBudgetViolation(@Nonnull Object owner) {
+        if (enabled) {
+            of(owner.getClass()).recordReadBudgetViolation();
+        }
+    }
+
+    /**
+     * Record the cloning by the owner, begun at the time with the event if any, as
+     * {@link UnmodifiableJsonifiableEntity#cloneAsJsonObject()}.
+     *
+     * @param clone the clone made, to size the event
+     */
+    static void recordClone(
+            @Nonnull Object owner, @Nullable Object event, long start, @Nonnull JsonObject clone
+    ) {
+        if (enabled) {
+            of(owner.getClass()).recordClone(System.nanoTime() - start);
+        }
+        JsonFlightRecorder.commitEstimated(event, owner.getClass(), clone);
+    }
+
+    /**
+     * The outcome of a read through JSON Pointer.
+     */
+    public enum ReadOutcome {
+        HIT, MISS, TYPE_MISMATCH
+    }
+
+    /**
+     * The counters of one class.
+     */
+    public static final class ClassMetrics {
+        private final Class<?> type;
+        private final LongAdder readHits = new LongAdder();
+        private final LongAdder readMisses = new LongAdder();
+        private final LongAdder readTypeMismatches = new LongAdder();
+        private final LongAdder encodeCount = new LongAdder();
+        private final LongAdder encodeChars = new LongAdder();
+        private final LongAdder encodeNanos = new LongAdder();
+        private final LongAdder writeToBufferCount = new LongAdder();
+        private final LongAdder writeToBufferBytes = new LongAdder();
+        private final LongAdder writeToBufferNanos = new LongAdder();
+        private final LongAdder readFromBufferCount = new LongAdder();
+        private final LongAdder readFromBufferBytes = new LongAdder();
+        private final LongAdder readFromBufferNanos = new LongAdder();
+        private final LongAdder readBudgetViolations = new LongAdder();
+        private final LongAdder cloneCount = new LongAdder();
+        private final LongAdder cloneNanos = new LongAdder();
+
+        private ClassMetrics(@Nonnull Class<?> type) {
+            this.type = type;
+        }
+
+        @Nonnull
+        public Class<?> getType() {
+            return type;
+        }
+
+        public void recordRead(@Nonnull ReadOutcome outcome) {
+            switch (outcome) {
+                case HIT:
+                    readHits.increment();
+                    break;
+                case MISS:
+                    readMisses.increment();
+                    break;
+                case TYPE_MISMATCH:
+                    readTypeMismatches.increment();
+                    break;
+            }
+        }
+
+        public void recordEncode(long chars, long nanos) {
+            encodeCount.increment();
+            encodeChars.add(chars);
+            encodeNanos.add(nanos);
+        }
+
+        public void recordWriteToBuffer(long bytes, long nanos) {
+            writeToBufferCount.increment();
+            writeToBufferBytes.add(bytes);
+            writeToBufferNanos.add(nanos);
+        }
+
+        public void recordReadFromBuffer(long bytes, long nanos) {
+            readFromBufferCount.increment();
+            readFromBufferBytes.add(bytes);
+            readFromBufferNanos.add(nanos);
+        }
+
+        public void recordReadBudgetViolation() {
+            readBudgetViolations.increment();
+        }
+
+        public void recordClone(long nanos) {
+            cloneCount.increment();
+            cloneNanos.add(nanos);
+        }
+
+        @Nonnull
+        public Snapshot snapshot() {
+            return new Snapshot(
+                    type.getName(),
+                    readHits.sum(), readMisses.sum(), readTypeMismatches.sum(),
+                    encodeCount.sum(), encodeChars.sum(), encodeNanos.sum(),
+                    writeToBufferCount.sum(), writeToBufferBytes.sum(), writeToBufferNanos.sum(),
+                    readFromBufferCount.sum(), readFromBufferBytes.sum(), readFromBufferNanos.sum(),
+                    readBudgetViolations.sum(),
+                    cloneCount.sum(), cloneNanos.sum()
+            );
+        }
+
+        private void reset() {
+            for (LongAdder adder : List.of(
+                    readHits, readMisses, readTypeMismatches,
+                    encodeCount, encodeChars, encodeNanos,
+                    writeToBufferCount, writeToBufferBytes, writeToBufferNanos,
+                    readFromBufferCount, readFromBufferBytes, readFromBufferNanos,
+                    readBudgetViolations,
+                    cloneCount, cloneNanos
+            )) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * The values of the counters of one class at one moment.
+     */
+    public static final class Snapshot {
+        private final String className;
+        private final long readHits;
+        private final long readMisses;
+        private final long readTypeMismatches;
+        private final long encodeCount;
+        private final long encodeChars;
+        private final long encodeNanos;
+        private final long writeToBufferCount;
+        private final long writeToBufferBytes;
+        private final long writeToBufferNanos;
+        private final long readFromBufferCount;
+        private final long readFromBufferBytes;
+        private final long readFromBufferNanos;
+        private final long readBudgetViolations;
+        private final long cloneCount;
+        private final long cloneNanos;
+
+        private Snapshot(
+                String className,
+                long readHits, long readMisses, long readTypeMismatches,
+                long encodeCount, long encodeChars, long encodeNanos,
+                long writeToBufferCount, long writeToBufferBytes, long writeToBufferNanos,
+                long readFromBufferCount, long readFromBufferBytes, long readFromBufferNanos,
+                long readBudgetViolations,
+                long cloneCount, long cloneNanos
+        ) {
+            this.className = className;
+            this.readHits = readHits;
+            this.readMisses = readMisses;
+            this.readTypeMismatches = readTypeMismatches;
+            this.encodeCount = encodeCount;
+            this.encodeChars = encodeChars;
+            this.encodeNanos = encodeNanos;
+            this.writeToBufferCount = writeToBufferCount;
+            this.writeToBufferBytes = writeToBufferBytes;
+            this.writeToBufferNanos = writeToBufferNanos;
+            this.readFromBufferCount = readFromBufferCount;
+            this.readFromBufferBytes = readFromBufferBytes;
+            this.readFromBufferNanos = readFromBufferNanos;
+            this.readBudgetViolations = readBudgetViolations;
+            this.cloneCount = cloneCount;
+            this.cloneNanos = cloneNanos;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public long getReadHits() {
+            return readHits;
+        }
+
+        public long getReadMisses() {
+            return readMisses;
+        }
+
+        public long getReadTypeMismatches() {
+            return readTypeMismatches;
+        }
+
+        public long getEncodeCount() {
+            return encodeCount;
+        }
+
+        public long getEncodeChars() {
+            return encodeChars;
+        }
+
+        public long getEncodeNanos() {
+            return encodeNanos;
+        }
+
+        public long getWriteToBufferCount() {
+            return writeToBufferCount;
+        }
+
+        public long getWriteToBufferBytes() {
+            return writeToBufferBytes;
+        }
+
+        public long getWriteToBufferNanos() {
+            return writeToBufferNanos;
+        }
+
+        public long getReadFromBufferCount() {
+            return readFromBufferCount;
+        }
+
+        public long getReadFromBufferBytes() {
+            return readFromBufferBytes;
+        }
+
+        public long getReadFromBufferNanos() {
+            return readFromBufferNanos;
+        }
+
+        /**
+         * @return the count of the frames failed to read on the limits of {@link JsonParseBudget}.
+         */
+        public long getReadBudgetViolations() {
+            return readBudgetViolations;
+        }
+
+        public long getCloneCount() {
+            return cloneCount;
+        }
+
+        public long getCloneNanos() {
+            return cloneNanos;
+        }
+
+        @Override
+        public String toString() {
+            return className
+                    + "{read: " + readHits + "/" + readMisses + "/" + readTypeMismatches
+                    + ", encode: " + encodeCount + "x " + encodeChars + "c " + encodeNanos + "ns"
+                    + ", writeToBuffer: " + writeToBufferCount + "x " + writeToBufferBytes + "B " + writeToBufferNanos + "ns"
+                    + ", readFromBuffer: " + readFromBufferCount + "x " + readFromBufferBytes + "B " + readFromBufferNanos + "ns"
+                    + " " + readBudgetViolations + " over budget"
+                    + ", clone: " + cloneCount + "x " + cloneNanos + "ns}";
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+/**
+ * An SPI to bridge {@link JsonMetrics} into a metrics stack; register it with
+ * {@link JsonMetrics#addExporter(JsonMetricsExporter)}.
+ *
+ * @since 5.0.0
+ */
+public interface JsonMetricsExporter {
+    /**
+     * @param snapshots the snapshots of the counters, keyed by the concrete class of the entities; unmodifiable.
+     */
+    void export(@Nonnull Map<Class<?>, JsonMetrics.Snapshot> snapshots);
+}
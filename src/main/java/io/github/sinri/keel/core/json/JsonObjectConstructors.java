@@ -0,0 +1,36 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cache of the public constructors accepting a {@link JsonObject}, looked up once per class, for
+ * {@link UnmodifiableJsonifiableEntity#wrap(JsonObject, Class)} and {@link JsonifiableMessageCodec}.
+ *
+ * @since 5.0.0
+ */
+final class JsonObjectConstructors {
+    private static final Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
+    private JsonObjectConstructors() {
+    }
+
+    /**
+     * @return the public constructor of the class accepting a {@link JsonObject}.
+     * @throws NoSuchMethodException if the class has no such constructor
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    static <T> Constructor<T> get(@Nonnull Class<T> type) throws NoSuchMethodException {
+        Constructor<?> constructor = constructors.get(type);
+        if (constructor == null) {
+            constructor = type.getConstructor(JsonObject.class);
+            constructors.putIfAbsent(type, constructor);
+        }
+        return (Constructor<T>) constructor;
+    }
+}
@@ -9,6 +9,7 @@ import javax.annotation.Nullable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * An interface for those entities could be read as an JSON object.
@@ -182,6 +183,151 @@ public interface JsonObjectReadable extends Iterable<Map.Entry<String, Object>>
         return r;
     }
 
+    /**
+     * Read the value of the top-level key directly, for the fixed-arity readers such as
+     * {@link #readLongOr(long, String)}.
+     * <p>
+     * By default, it reads through {@link #read(Function)}; the implementations backed by a map look it up in the map
+     * instead.
+     *
+     * @return the value of the top-level entry, nullable.
+     * @since 5.0.0
+     */
+    default @Nullable Object readEntry(@Nonnull String key) {
+        return read(jsonPointer -> {
+            jsonPointer.append(key);
+            return Object.class;
+        });
+    }
+
+    /**
+     * Read a number of the top-level key as a primitive, without the JSON Pointer and boxing of
+     * {@link #readLong(String...)}.
+     *
+     * @param dflt the value to return if the value is absent or not a number
+     * @since 5.0.0
+     */
+    default long readLongOr(long dflt, @Nonnull String key) {
+        Number value = JsonMetrics.castRead(this, readEntry(key), Number.class);
+        return value == null ? dflt : value.longValue();
+    }
+
+    /**
+     * As {@link #readLongOr(long, String)}, for the value nested in 2 levels.
+     *
+     * @since 5.0.0
+     */
+    default long readLongOr(long dflt, @Nonnull String key1, @Nonnull String key2) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(readEntry(key1), key2), Number.class);
+        return value == null ? dflt : value.longValue();
+    }
+
+    /**
+     * As {@link #readLongOr(long, String)}, for the value nested in 3 levels.
+     *
+     * @since 5.0.0
+     */
+    default long readLongOr(long dflt, @Nonnull String key1, @Nonnull String key2, @Nonnull String key3) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(JsonPointerSteps.step(readEntry(key1), key2), key3), Number.class);
+        return value == null ? dflt : value.longValue();
+    }
+
+    /**
+     * Read a number of the top-level key as a primitive, without the JSON Pointer and boxing of
+     * {@link #readInteger(String...)}.
+     *
+     * @param dflt the value to return if the value is absent or not a number
+     * @since 5.0.0
+     */
+    default int readIntOr(int dflt, @Nonnull String key) {
+        Number value = JsonMetrics.castRead(this, readEntry(key), Number.class);
+        return value == null ? dflt : value.intValue();
+    }
+
+    /**
+     * As {@link #readIntOr(int, String)}, for the value nested in 2 levels.
+     *
+     * @since 5.0.0
+     */
+    default int readIntOr(int dflt, @Nonnull String key1, @Nonnull String key2) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(readEntry(key1), key2), Number.class);
+        return value == null ? dflt : value.intValue();
+    }
+
+    /**
+     * As {@link #readIntOr(int, String)}, for the value nested in 3 levels.
+     *
+     * @since 5.0.0
+     */
+    default int readIntOr(int dflt, @Nonnull String key1, @Nonnull String key2, @Nonnull String key3) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(JsonPointerSteps.step(readEntry(key1), key2), key3), Number.class);
+        return value == null ? dflt : value.intValue();
+    }
+
+    /**
+     * Read a number of the top-level key as a primitive, without the JSON Pointer and boxing of
+     * {@link #readDouble(String...)}.
+     *
+     * @param dflt the value to return if the value is absent or not a number
+     * @since 5.0.0
+     */
+    default double readDoubleOr(double dflt, @Nonnull String key) {
+        Number value = JsonMetrics.castRead(this, readEntry(key), Number.class);
+        return value == null ? dflt : value.doubleValue();
+    }
+
+    /**
+     * As {@link #readDoubleOr(double, String)}, for the value nested in 2 levels.
+     *
+     * @since 5.0.0
+     */
+    default double readDoubleOr(double dflt, @Nonnull String key1, @Nonnull String key2) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(readEntry(key1), key2), Number.class);
+        return value == null ? dflt : value.doubleValue();
+    }
+
+    /**
+     * As {@link #readDoubleOr(double, String)}, for the value nested in 3 levels.
+     *
+     * @since 5.0.0
+     */
+    default double readDoubleOr(double dflt, @Nonnull String key1, @Nonnull String key2, @Nonnull String key3) {
+        Number value = JsonMetrics.castRead(this, JsonPointerSteps.step(JsonPointerSteps.step(readEntry(key1), key2), key3), Number.class);
+        return value == null ? dflt : value.doubleValue();
+    }
+
+    /**
+     * Read a boolean of the top-level key as a primitive, without the JSON Pointer and boxing of
+     * {@link #readBoolean(String...)}.
+     *
+     * @param dflt the value to return if the value is absent or not a boolean
+     * @since 5.0.0
+     */
+    default boolean readBooleanOr(boolean dflt, @Nonnull String key) {
+        Boolean value = JsonMetrics.castRead(this, readEntry(key), Boolean.class);
+        return value == null ? dflt : value.booleanValue();
+    }
+
+    /**
+     * As {@link #readBooleanOr(boolean, String)}, for the value nested in 2 levels.
+     *
+     * @since 5.0.0
+     */
+    default boolean readBooleanOr(boolean dflt, @Nonnull String key1, @Nonnull String key2) {
+        Boolean value = JsonMetrics.castRead(this, JsonPointerSteps.step(readEntry(key1), key2), Boolean.class);
+        return value == null ? dflt : value.booleanValue();
+    }
+
+    /**
+     * As {@link #readBooleanOr(boolean, String)}, for the value nested in 3 levels.
+     *
+     * @since 5.0.0
+     */
+    default boolean readBooleanOr(boolean dflt, @Nonnull String key1, @Nonnull String key2, @Nonnull String key3) {
+        Boolean value = JsonMetrics.castRead(this, JsonPointerSteps.step(JsonPointerSteps.step(readEntry(key1), key2), key3), Boolean.class);
+        return value == null ? dflt : value.booleanValue();
+    }
+
     default @Nullable JsonObject readJsonObject(String... args) {
         return read(jsonPointer -> {
             for (var arg : args) {
@@ -481,6 +627,44 @@ public interface JsonObjectReadable extends Iterable<Map.Entry<String, Object>>
         }
     }
 
+    /**
+     * Read a value as the expected type, with the outcome as a status instead of null or an exception.
+     *
+     * @param type     the expected type
+     * @param coercion the mode to convert the value into the expected type
+     * @param args     the JSON Pointer arguments
+     * @return the value with its status
+     * @since 5.0.0
+     */
+    default @Nonnull <T> JsonReadResult<T> readChecked(@Nonnull Class<T> type, @Nonnull JsonCoercion coercion, String... args) {
+        return JsonReadResult.convert(readValue(args), type, coercion);
+    }
+
+    /**
+     * Query the values by the JSONPath expression, compiled once and cached; see {@link JsonPathQuery}.
+     *
+     * @param jsonPath the JSONPath expression, such as {@code $.items[?(@.price > 100)].sku}
+     * @return the lazy stream of the matched values
+     * @throws IllegalArgumentException if the expression is not valid
+     * @since 5.0.0
+     */
+    default @Nonnull Stream<Object> queryJsonPath(@Nonnull String jsonPath) {
+        return JsonPathQuery.compile(jsonPath).stream(this);
+    }
+
+    /**
+     * Read all the paths declared in the plan in one traversal.
+     *
+     * @param plan   the plan of the paths to read
+     * @param result the holder to fill, reused from the previous read with the same plan; or null to create a new one
+     * @return the filled holder
+     * @since 5.0.0
+     */
+    default @Nonnull JsonReadPlan.Result readAll(@Nonnull JsonReadPlan plan, @Nullable JsonReadPlan.Result result) {
+        // the root pointer reads the whole JSON object
+        Object root = read(jsonPointer -> Object.class);
+        return plan.resolve(root, result);
+    }
 
     boolean isEmpty();
 
@@ -1,5 +1,8 @@
 package io.github.sinri.keel.core.json;
 
+import io.github.sinri.keel.utils.json.JsonParseOptions;
+import io.github.sinri.keel.utils.json.JsonTreeParser;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 
 import javax.annotation.Nonnull;
@@ -15,4 +18,26 @@ public interface JsonObjectReloadable {
      */
     void reloadData(@Nonnull JsonObject jsonObject);
 
+    /**
+     * Reload with the JSON object parsed from the buffer, with the modes in the options applied during parsing.
+     *
+     * @param buffer  the buffer of the JSON object expression in UTF-8
+     * @param options the options to parse with, such as interning the keys or projecting to some paths
+     * @since 5.0.0
+     */
+    default void reloadData(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        reloadData(JsonTreeParser.parseJsonObject(buffer, options));
+    }
+
+    /**
+     * Reload with the JSON object parsed from the expression, with the modes in the options applied during parsing.
+     *
+     * @param jsonExpression the JSON object expression
+     * @param options        the options to parse with, such as interning the keys or projecting to some paths
+     * @since 5.0.0
+     */
+    default void reloadData(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options) {
+        reloadData(JsonTreeParser.parseJsonObject(jsonExpression, options));
+    }
+
 }
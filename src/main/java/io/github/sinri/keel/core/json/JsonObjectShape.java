@@ -0,0 +1,208 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shape of JSON objects, i.e. the sequence of their keys, shared by all the objects with the same keys in the same
+ * order; each key takes one slot, as its index in the sequence.
+ * <p>
+ * Shapes form a global transition tree from the empty root shape: adding a key to an object of one shape moves the
+ * object to the child shape with the key appended, which is created once and then shared.
+ * <p>
+ * To keep the tree bounded for the objects with dynamic keys, a shape has at most {@link #MAX_SLOTS} slots and
+ * {@link #MAX_TRANSITIONS} children, and at most {@link #MAX_SHAPES} shapes are created in total; beyond them, no shape
+ * is given and the objects fall back to a common map. The shapes created are kept for the life of the JVM.
+ *
+ * @see ShapedJsonifiableDataUnitImpl
+ * @since 5.0.0
+ */
+public final class JsonObjectShape {
+    public static final int MAX_SLOTS = 64;
+    public static final int MAX_TRANSITIONS = 256;
+    public static final int MAX_SHAPES = 16 * 1024;
+
+    private static final JsonObjectShape ROOT = new JsonObjectShape(new String[0]);
+    /**
+     * The count of the shapes created but the root.
+     */
+    private static final AtomicInteger shapeCount = new AtomicInteger();
+
+    private final String[] keys;
+    private final Map<String, Integer> slots;
+    private final ConcurrentHashMap<String, JsonObjectShape> transitions = new ConcurrentHashMap<>();
+
+    private JsonObjectShape(@Nonnull String[] keys) {
+        this.keys = keys;
+        Map<String, Integer> map = new HashMap<>(keys.length * 4 / 3 + 1);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        this.slots = map;
+    }
+
+    /**
+     * @return the shape without any key.
+     */
+    @Nonnull
+    public static JsonObjectShape root() {
+        return ROOT;
+    }
+
+    /**
+     * @return the shared shape of the keys in the order, or null if it is beyond the bounds.
+     */
+    @Nullable
+    public static JsonObjectShape of(@Nonnull Iterable<String> keys) {
+        JsonObjectShape shape = ROOT;
+        for (String key : keys) {
+            if (shape.slotOf(key) >= 0) {
+                continue;
+            }
+            shape = shape.withKey(key);
+            if (shape == null) {
+                return null;
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * @return the count of the shapes created, but the root.
+     */
+    public static int getShapeCount() {
+        return shapeCount.get();
+    }
+
+    /**
+     * @return the count of slots.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return the slot of the key, or -1 if the key is not in this shape.
+     */
+    public int slotOf(@Nonnull String key) {
+        Integer slot = slots.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    @Nonnull
+    public String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    @Nonnull
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * @param key a key not in this shape
+     * @return the shared shape with the key appended to this one, or null if it is beyond the bounds.
+     */
+    @Nullable
+    public JsonObjectShape withKey(@Nonnull String key) {
+        JsonObjectShape next = transitions.get(key);
+        if (next != null) {
+            return next;
+        }
+        if (keys.length >= MAX_SLOTS || transitions.size() >= MAX_TRANSITIONS) {
+            return null;
+        }
+        return transitions.computeIfAbsent(key, k -> {
+            if (shapeCount.incrementAndGet() > MAX_SHAPES) {
+                shapeCount.decrementAndGet();
+                return null;
+            }
+            String[] nextKeys = Arrays.copyOf(keys, keys.length + 1);
+            nextKeys[keys.length] = k;
+            return new JsonObjectShape(nextKeys);
+        });
+    }
+
+    /**
+     * @return the shared shape of the keys of this one but the given key, or null if it is beyond the bounds.
+     */
+    @Nullable
+    public JsonObjectShape withoutKey(@Nonnull String key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return this;
+        }
+        List<String> rest = new ArrayList<>(keys.length - 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (i != slot) {
+                rest.add(keys[i]);
+            }
+        }
+        return of(rest);
+    }
+
+    /**
+     * Create an accessor of the key, which caches the slot for the latest shape seen, for a frequent read of the key
+     * on the objects of the same shape.
+     */
+    @Nonnull
+    public static Accessor accessor(@Nonnull String key) {
+        return new Accessor(key);
+    }
+
+    @Override
+    public String toString() {
+        return "JsonObjectShape" + Arrays.toString(keys);
+    }
+
+    /**
+     * Reads one key with the slot cached for the latest shape seen; thread-safe.
+     */
+    public static final class Accessor {
+        private final String key;
+        private volatile CachedSlot cached = new CachedSlot(null, -1);
+
+        private Accessor(@Nonnull String key) {
+            this.key = key;
+        }
+
+        @Nonnull
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the slot of the key in the shape, or -1 if the key is not in the shape.
+         */
+        public int slotIn(@Nonnull JsonObjectShape shape) {
+            CachedSlot c = cached;
+            if (c.shape == shape) {
+                return c.slot;
+            }
+            int slot = shape.slotOf(key);
+            cached = new CachedSlot(shape, slot);
+            return slot;
+        }
+
+        /**
+         * @return the value of the key in the data unit, or null if absent.
+         */
+        @Nullable
+        public Object read(@Nonnull ShapedJsonifiableDataUnitImpl dataUnit) {
+            return dataUnit.readByAccessor(this);
+        }
+    }
+
+    private static final class CachedSlot {
+        private final @Nullable JsonObjectShape shape;
+        private final int slot;
+
+        private CachedSlot(@Nullable JsonObjectShape shape, int slot) {
+            this.shape = shape;
+            this.slot = slot;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package io.github.sinri.keel.core.json;
 
+import io.github.sinri.keel.utils.json.JsonMerger;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  * An interface for those entities could be read and write as an JSON object.
  *
@@ -57,4 +62,36 @@ public interface JsonObjectWritable extends JsonObjectReadable {
         }
         return x;
     }
+
+    /**
+     * Deep merge the overlay into this entity, with the overlay taking priority, as {@link JsonMerger} tells.
+     * <p>
+     * Only the top-level entries in the overlay are written; the values not touched by both sides are shared, not
+     * copied.
+     *
+     * @since 5.0.0
+     */
+    default void mergeIn(@Nonnull JsonObject overlay, @Nonnull JsonMerger merger) {
+        for (Map.Entry<String, Object> entry : overlay.getMap().entrySet()) {
+            String key = entry.getKey();
+            Object current = readValue(key);
+            Object merged = current == null
+                    ? merger.mergeValues(Arrays.asList(entry.getValue()))
+                    : merger.mergeValues(Arrays.asList(current, entry.getValue()));
+            if (JsonMerger.isRemoval(merged)) {
+                removeEntry(key);
+            } else {
+                ensureEntry(key, merged);
+            }
+        }
+    }
+
+    /**
+     * Deep merge the overlay into this entity with the default {@link JsonMerger}.
+     *
+     * @since 5.0.0
+     */
+    default void mergeIn(@Nonnull JsonObject overlay) {
+        mergeIn(overlay, new JsonMerger());
+    }
 }
@@ -0,0 +1,65 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Options for the asynchronous variants of encoding, decoding and cloning, such as
+ * {@link UnmodifiableJsonifiableEntity#encodeAsync(io.vertx.core.Vertx, JsonOffloadOptions)}.
+ * <p>
+ * The work on a payload with the estimated size not greater than the inline threshold runs in place; otherwise it is
+ * moved to the executor if given (such as one of virtual threads), or to the worker pool of Vert.x, so that an event
+ * loop is not blocked by a large payload.
+ *
+ * @since 5.0.0
+ */
+public class JsonOffloadOptions {
+    public static final long DEFAULT_INLINE_THRESHOLD_BYTES = 64 * 1024;
+
+    private static volatile JsonOffloadOptions defaultOptions = new JsonOffloadOptions();
+
+    private long inlineThresholdBytes = DEFAULT_INLINE_THRESHOLD_BYTES;
+    private @Nullable Executor executor;
+
+    public JsonOffloadOptions() {
+    }
+
+    /**
+     * @return the options used by the asynchronous variants without options given.
+     */
+    @Nonnull
+    public static JsonOffloadOptions getDefault() {
+        return defaultOptions;
+    }
+
+    public static void setDefault(@Nonnull JsonOffloadOptions options) {
+        defaultOptions = Objects.requireNonNull(options);
+    }
+
+    public long getInlineThresholdBytes() {
+        return inlineThresholdBytes;
+    }
+
+    /**
+     * @param inlineThresholdBytes the max estimated size in bytes to work in place; a negative value to offload always.
+     */
+    public JsonOffloadOptions setInlineThresholdBytes(long inlineThresholdBytes) {
+        this.inlineThresholdBytes = inlineThresholdBytes;
+        return this;
+    }
+
+    @Nullable
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor the executor to offload to, or null to use the worker pool of Vert.x.
+     */
+    public JsonOffloadOptions setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
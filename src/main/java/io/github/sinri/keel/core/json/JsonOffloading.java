@@ -0,0 +1,92 @@
+package io.github.sinri.keel.core.json;
+
+import io.github.sinri.keel.utils.json.JsonSizeEstimator;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a piece of JSON work in place or offloaded, by the estimated size, following {@link JsonOffloadOptions}.
+ *
+ * @since 5.0.0
+ */
+final class JsonOffloading {
+    private JsonOffloading() {
+    }
+
+    /**
+     * @return whether the work on a payload of the estimated size should run in place.
+     */
+    static boolean isInline(long estimatedSize, @Nonnull JsonOffloadOptions options) {
+        return options.getInlineThresholdBytes() >= 0 && estimatedSize <= options.getInlineThresholdBytes();
+    }
+
+    /**
+     * @return whether the work on the JSON value should run in place, by its estimated size.
+     */
+    static boolean isInlineFor(@Nullable Object value, @Nonnull JsonOffloadOptions options) {
+        long threshold = options.getInlineThresholdBytes();
+        return threshold >= 0 && estimateSize(value, threshold) <= threshold;
+    }
+
+    /**
+     * As {@link JsonSizeEstimator#estimate(Object, long)}, with the nested entities walked through their JSON objects.
+     */
+    static long estimateSize(@Nullable Object value, long limit) {
+        return JsonSizeEstimator.estimate(value, limit, JsonOffloading::expandEntity);
+    }
+
+    @Nullable
+    private static Object expandEntity(@Nullable Object value) {
+        if (value instanceof JsonObjectConvertible) {
+            return ((JsonObjectConvertible) value).toJsonObject();
+        }
+        if (value instanceof UnmodifiableJsonifiableEntity) {
+            // the root pointer reads the wrapped JSON object
+            return ((UnmodifiableJsonifiableEntity) value).read(jsonPointer -> JsonObject.class);
+        }
+        return null;
+    }
+
+    /**
+     * @param inline whether to run in place, as {@link #isInline(long, JsonOffloadOptions)} tells
+     * @return the future completed on the context of the caller.
+     */
+    @Nonnull
+    static <T> Future<T> run(@Nonnull Vertx vertx, boolean inline, @Nonnull JsonOffloadOptions options, @Nonnull Callable<T> work) {
+        if (inline) {
+            try {
+                return Future.succeededFuture(work.call());
+            } catch (Throwable throwable) {
+                return Future.failedFuture(throwable);
+            }
+        }
+        Executor executor = options.getExecutor();
+        if (executor == null) {
+            return vertx.executeBlocking(work, false);
+        }
+        Context context = vertx.getOrCreateContext();
+        Promise<T> promise = Promise.promise();
+        try {
+            executor.execute(() -> {
+                try {
+                    T result = work.call();
+                    context.runOnContext(v -> promise.complete(result));
+                } catch (Throwable throwable) {
+                    context.runOnContext(v -> promise.fail(throwable));
+                }
+            });
+        } catch (Throwable throwable) {
+            // such as RejectedExecutionException
+            return Future.failedFuture(throwable);
+        }
+        return promise.future();
+    }
+}
@@ -0,0 +1,447 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precompiled template to write JSON objects of a fixed shape, such as a hot response, into {@link Buffer}s.
+ * <p>
+ * The shape is taken from a prototype: its nested non-empty objects are kept as the structure, and the other values
+ * are the slots to fill. The static fragments between the slots, as the braces, the quoted and escaped keys and the
+ * separators, are encoded to bytes once; a rendering only writes the values of the slots in between. The output is
+ * the same as {@link JsonObject#encode()} of an object of the shape, with the keys in the order of the prototype.
+ * <p>
+ * The values are read by the paths of the slots from the source, or given in the order of the slots. The common
+ * scalars are written directly; other values by {@link JsonBufferEncoder}. An absent value is written as null, to keep
+ * the shape.
+ * <p>
+ * It is immutable and thread-safe.
+ *
+ * @since 5.0.0
+ */
+public final class JsonOutputTemplate {
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The static fragments, one more than the slots: fragment i is written before slot i, and the last after all.
+     */
+    private final byte[][] fragments;
+    private final String[][] slotPaths;
+    private final int staticLength;
+
+    private JsonOutputTemplate(@Nonnull List<byte[]> fragments, @Nonnull List<String[]> slotPaths) {
+        this.fragments = fragments.toArray(new byte[0][]);
+        this.slotPaths = slotPaths.toArray(new String[0][]);
+        int length = 0;
+        for (byte[] fragment : this.fragments) {
+            length += fragment.length;
+        }
+        this.staticLength = length;
+    }
+
+    /**
+     * Compile the shape of the prototype; the values in it are not used.
+     */
+    @Nonnull
+    public static JsonOutputTemplate of(@Nonnull JsonObject prototype) {
+        Compiler compiler = new Compiler();
+        compiler.compileObject(prototype.getMap(), new ArrayList<>());
+        return compiler.finish();
+    }
+
+    /**
+     * Compile the shape of the prototype, as {@link JsonObjectConvertible#toJsonObject()}.
+     */
+    @Nonnull
+    public static JsonOutputTemplate of(@Nonnull JsonObjectConvertible prototype) {
+        return of(prototype.toJsonObject());
+    }
+
+    /**
+     * Compile a flat shape of the top-level keys, in order.
+     */
+    @Nonnull
+    public static JsonOutputTemplate ofKeys(@Nonnull String... keys) {
+        JsonObject prototype = new JsonObject();
+        for (String key : keys) {
+            prototype.putNull(key);
+        }
+        return of(prototype);
+    }
+
+    /**
+     * @return the count of the slots.
+     */
+    public int getSlotCount() {
+        return slotPaths.length;
+    }
+
+    /**
+     * @return the paths of the slots in order, each as the keys from the top level.
+     */
+    @Nonnull
+    public List<List<String>> getSlotPaths() {
+        List<List<String>> list = new ArrayList<>(slotPaths.length);
+        for (String[] path : slotPaths) {
+            list.add(List.of(path));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Render the values read from the object by the paths of the slots.
+     */
+    @Nonnull
+    public Buffer render(@Nonnull JsonObject source) {
+        Buffer buffer = Buffer.buffer(initialCapacity());
+        render(source, buffer);
+        return buffer;
+    }
+
+    /**
+     * Append the rendering of the values read from the object by the paths of the slots to the buffer.
+     */
+    public void render(@Nonnull JsonObject source, @Nonnull Buffer buffer) {
+        Map<String, Object> map = source.getMap();
+        Output output = new Output(buffer, initialCapacity());
+        for (int i = 0; i < slotPaths.length; i++) {
+            output.writeBytes(fragments[i]);
+            String[] path = slotPaths[i];
+            Object value = map.get(path[0]);
+            for (int j = 1; j < path.length && value != null; j++) {
+                value = stepInto(value, path[j]);
+            }
+            output.writeValue(value);
+        }
+        output.writeBytes(fragments[slotPaths.length]);
+        output.flush();
+    }
+
+    /**
+     * Append the rendering of the values read from the entity by the paths of the slots to the buffer.
+     */
+    public void render(@Nonnull JsonObjectReadable source, @Nonnull Buffer buffer) {
+        Output output = new Output(buffer, initialCapacity());
+        for (int i = 0; i < slotPaths.length; i++) {
+            output.writeBytes(fragments[i]);
+            String[] path = slotPaths[i];
+            Object value = source.readEntry(path[0]);
+            for (int j = 1; j < path.length && value != null; j++) {
+                value = stepInto(value, path[j]);
+            }
+            output.writeValue(value);
+        }
+        output.writeBytes(fragments[slotPaths.length]);
+        output.flush();
+    }
+
+    /**
+     * Append the rendering of the values given in the order of the slots to the buffer, which skips the lookups.
+     *
+     * @throws IllegalArgumentException if the count of the values does not match the slots
+     */
+    public void renderValues(@Nonnull Buffer buffer, @Nonnull Object... values) {
+        if (values.length != slotPaths.length) {
+            throw new IllegalArgumentException("The template has " + slotPaths.length + " slots, but " + values.length + " values given");
+        }
+        Output output = new Output(buffer, initialCapacity());
+        for (int i = 0; i < values.length; i++) {
+            output.writeBytes(fragments[i]);
+            output.writeValue(values[i]);
+        }
+        output.writeBytes(fragments[values.length]);
+        output.flush();
+    }
+
+    private int initialCapacity() {
+        return staticLength + 16 * slotPaths.length;
+    }
+
+    @Nullable
+    private static Object stepInto(@Nonnull Object container, @Nonnull String key) {
+        if (container instanceof JsonObject) {
+            return ((JsonObject) container).getMap().get(key);
+        }
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(key);
+        }
+        // a nested entity, compiled as an object from its JSON object
+        if (container instanceof JsonObjectReadable) {
+            return ((JsonObjectReadable) container).readEntry(key);
+        }
+        if (container instanceof JsonObjectConvertible) {
+            return ((JsonObjectConvertible) container).toJsonObject().getMap().get(key);
+        }
+        return null;
+    }
+
+    /**
+     * Escape as the default of Jackson: the quote, the backslash and the control characters only.
+     */
+    private static void escape(@Nonnull String value, @Nonnull StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Collects the bytes of a rendering in an array, appended to the buffer in one go, as
+     * {@link Buffer#appendString(String)} would allocate the bytes of each value.
+     */
+    private static final class Output {
+        private final Buffer buffer;
+        private byte[] bytes;
+        private int length = 0;
+
+        private Output(@Nonnull Buffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.bytes = new byte[capacity];
+        }
+
+        private void ensure(int more) {
+            if (length + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+            }
+        }
+
+        private void writeBytes(@Nonnull byte[] part) {
+            ensure(part.length);
+            System.arraycopy(part, 0, bytes, length, part.length);
+            length += part.length;
+        }
+
+        /**
+         * Write the common scalars by the exact classes as Jackson writes them; others by {@link JsonBufferEncoder}.
+         */
+        private void writeValue(@Nullable Object value) {
+            if (value == null) {
+                writeBytes(NULL);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (type == String.class) {
+                writeString((String) value);
+            } else if (type == Integer.class) {
+                writeLong((Integer) value);
+            } else if (type == Long.class) {
+                writeLong((Long) value);
+            } else if (type == Boolean.class) {
+                writeBytes((Boolean) value ? TRUE : FALSE);
+            } else if (type == Double.class && Double.isFinite((Double) value)) {
+                writeAscii(value.toString());
+            } else {
+                writeByEncoder(value);
+            }
+        }
+
+        private void writeByEncoder(@Nonnull Object value) {
+            flush();
+            JsonBufferEncoder.encode(value, buffer);
+        }
+
+        private void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            int position = length + digits;
+            do {
+                bytes[--position] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            length += digits;
+        }
+
+        private void writeAscii(@Nonnull String value) {
+            ensure(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[length++] = (byte) value.charAt(i);
+            }
+        }
+
+        /**
+         * Write the string quoted, escaped and in UTF-8; one with a lone surrogate goes to the encoder, which escapes
+         * the surrogate as Jackson does.
+         */
+        private void writeString(@Nonnull String value) {
+            int start = length;
+            // the longest is an escape of 6 bytes per char
+            ensure(value.length() * 6 + 2);
+            byte[] b = bytes;
+            int n = length;
+            b[n++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 0x20 && c != '"' && c != '\\') {
+                        b[n++] = (byte) c;
+                    } else {
+                        n = writeEscape(c, b, n);
+                    }
+                } else if (c < 0x800) {
+                    b[n++] = (byte) (0xC0 | (c >> 6));
+                    b[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (!Character.isSurrogate(c)) {
+                    b[n++] = (byte) (0xE0 | (c >> 12));
+                    b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    b[n++] = (byte) (0xF0 | (codePoint >> 18));
+                    b[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    b[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    b[n++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    length = start;
+                    writeByEncoder(value);
+                    return;
+                }
+            }
+            b[n++] = '"';
+            length = n;
+        }
+
+        private static int writeEscape(char c, @Nonnull byte[] b, int n) {
+            b[n++] = '\\';
+            switch (c) {
+                case '"':
+                case '\\':
+                    b[n++] = (byte) c;
+                    break;
+                case '\b':
+                    b[n++] = 'b';
+                    break;
+                case '\t':
+                    b[n++] = 't';
+                    break;
+                case '\n':
+                    b[n++] = 'n';
+                    break;
+                case '\f':
+                    b[n++] = 'f';
+                    break;
+                case '\r':
+                    b[n++] = 'r';
+                    break;
+                default:
+                    b[n++] = 'u';
+                    b[n++] = '0';
+                    b[n++] = '0';
+                    b[n++] = (byte) HEX[c >> 4];
+                    b[n++] = (byte) HEX[c & 0xF];
+            }
+            return n;
+        }
+
+        private void flush() {
+            if (length > 0) {
+                buffer.appendBytes(bytes, 0, length);
+                length = 0;
+            }
+        }
+    }
+
+    /**
+     * Walks the prototype, collecting the static text between the slots.
+     */
+    private static final class Compiler {
+        private final List<byte[]> fragments = new ArrayList<>();
+        private final List<String[]> slotPaths = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+
+        private void compileObject(@Nonnull Map<String, Object> object, @Nonnull List<String> path) {
+            text.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                if (!first) {
+                    text.append(',');
+                }
+                first = false;
+                text.append('"');
+                escape(entry.getKey(), text);
+                text.append("\":");
+                path.add(entry.getKey());
+                Map<String, Object> nested = asNonEmptyObject(entry.getValue());
+                if (nested != null) {
+                    compileObject(nested, path);
+                } else {
+                    fragments.add(text.toString().getBytes(StandardCharsets.UTF_8));
+                    text.setLength(0);
+                    slotPaths.add(path.toArray(new String[0]));
+                }
+                path.remove(path.size() - 1);
+            }
+            text.append('}');
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable
+        private static Map<String, Object> asNonEmptyObject(@Nullable Object value) {
+            Map<String, Object> map = null;
+            if (value instanceof JsonObject) {
+                map = ((JsonObject) value).getMap();
+            } else if (value instanceof JsonObjectConvertible) {
+                map = ((JsonObjectConvertible) value).toJsonObject().getMap();
+            } else if (value instanceof Map) {
+                map = (Map<String, Object>) value;
+            }
+            return map == null || map.isEmpty() ? null : map;
+        }
+
+        @Nonnull
+        private JsonOutputTemplate finish() {
+            fragments.add(text.toString().getBytes(StandardCharsets.UTF_8));
+            return new JsonOutputTemplate(fragments, slotPaths);
+        }
+    }
+}
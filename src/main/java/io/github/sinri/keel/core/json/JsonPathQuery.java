@@ -0,0 +1,1064 @@
+package io.github.sinri.keel.core.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.sinri.keel.utils.json.JsonParseOptions;
+import io.github.sinri.keel.utils.json.JsonTreeParser;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compiled JSONPath expression, to query the values in a JSON tree by wildcards, slices, recursive descent and
+ * filters instead of one exact JSON Pointer.
+ * <p>
+ * The supported syntax, in the common one of JSONPath:
+ * <ul>
+ *     <li>{@code $} as the root, and {@code @} as the current value in filters;</li>
+ *     <li>{@code .name}, {@code ['name']} and {@code ["name"]} for a member of an object;</li>
+ *     <li>{@code [n]} for an item of an array, counting from the end if negative;</li>
+ *     <li>{@code .*} and {@code [*]} for all the members or items;</li>
+ *     <li>{@code [start:end:step]} for a slice of an array;</li>
+ *     <li>{@code [a,b]} for the union of the selectors;</li>
+ *     <li>{@code ..name}, {@code ..*} and {@code ..[...]} for the recursive descent;</li>
+ *     <li>{@code [?(...)]} or {@code [?...]} for a filter, with the paths on {@code @} and {@code $}, the literals
+ *     (numbers, quoted strings, {@code true}, {@code false} and {@code null}), the comparisons
+ *     ({@code == != < <= > >=}), and the logical operators ({@code && || !}); a path alone tests the existence, and
+ *     a path compared should be singular, with only members and indexes.</li>
+ * </ul>
+ * For example, {@code $.items[?(@.price > 100)].sku}.
+ * <p>
+ * Compile with {@link #compile(String)}, which caches the compiled queries by expression. A compiled query is
+ * immutable and thread-safe; the evaluation over a tree is lazy, so the values are found as iterated.
+ * <p>
+ * A query with only members, non-negative indexes and wildcards without recursive descent could also be evaluated
+ * over the raw bytes of JSON in a streaming way, see {@link #forEachMatch(Buffer, Consumer)}.
+ *
+ * @since 5.0.0
+ */
+public final class JsonPathQuery {
+    private static final int CACHE_CAPACITY = 1024;
+    private static final Map<String, JsonPathQuery> cache = new ConcurrentHashMap<>();
+    /**
+     * The result of a path in a filter that matched nothing.
+     */
+    private static final Object NOTHING = new Object();
+    private static final JsonParseOptions DEFAULT_PARSE_OPTIONS = new JsonParseOptions();
+
+    private final String expression;
+    private final Segment[] segments;
+    private final boolean streamable;
+
+    private JsonPathQuery(@Nonnull String expression) {
+        this.expression = expression;
+        Compiler compiler = new Compiler(expression);
+        this.segments = compiler.compileQuery();
+        this.streamable = Arrays.stream(segments).allMatch(Segment::isStreamable);
+    }
+
+    /**
+     * Compile the JSONPath expression, or get the compiled query from the cache.
+     *
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    @Nonnull
+    public static JsonPathQuery compile(@Nonnull String expression) {
+        JsonPathQuery query = cache.get(expression);
+        if (query == null) {
+            query = new JsonPathQuery(expression);
+            if (cache.size() >= CACHE_CAPACITY) {
+                cache.clear();
+            }
+            cache.put(expression, query);
+        }
+        return query;
+    }
+
+    @Nonnull
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return whether this query could be evaluated over the raw bytes in a streaming way.
+     */
+    public boolean isStreamable() {
+        return streamable;
+    }
+
+    /**
+     * Evaluate lazily over the JSON tree.
+     *
+     * @param root the root value, such as a {@link JsonObject}; {@link Map} and {@link List} are read as JSON
+     * @return the iterator of the matched values, as {@link JsonObject}, {@link JsonArray}, scalars or null.
+     */
+    @Nonnull
+    public Iterator<Object> iterate(@Nullable Object root) {
+        Object normalizedRoot = RootJsonPointerIterator.jsonify(root);
+        return evaluate(segments, normalizedRoot, normalizedRoot);
+    }
+
+    /**
+     * Evaluate lazily over the readable entity.
+     */
+    @Nonnull
+    public Iterator<Object> iterate(@Nonnull JsonObjectReadable readable) {
+        // the root pointer reads the whole JSON object
+        Object root = readable.read(jsonPointer -> Object.class);
+        return iterate(root);
+    }
+
+    /**
+     * @return the lazy stream of the matched values; see {@link #iterate(Object)}.
+     */
+    @Nonnull
+    public Stream<Object> stream(@Nullable Object root) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterate(root), Spliterator.ORDERED),
+                false
+        );
+    }
+
+    /**
+     * @return the lazy stream of the matched values in the readable entity.
+     */
+    @Nonnull
+    public Stream<Object> stream(@Nonnull JsonObjectReadable readable) {
+        Object root = readable.read(jsonPointer -> Object.class);
+        return stream(root);
+    }
+
+    /**
+     * @return all the matched values, in order.
+     */
+    @Nonnull
+    public List<Object> evaluate(@Nullable Object root) {
+        List<Object> list = new ArrayList<>();
+        iterate(root).forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Evaluate over the raw bytes of JSON. If {@link #isStreamable()}, the bytes are read as a token stream, the
+     * unmatched parts skipped and only the matched values built; otherwise the whole tree is parsed first.
+     *
+     * @param json     the bytes of a JSON value
+     * @param consumer to receive the matched values in order
+     * @throws DecodeException if the bytes are not valid JSON
+     */
+    public void forEachMatch(@Nonnull Buffer json, @Nonnull Consumer<Object> consumer) {
+        forEachMatch(json, DEFAULT_PARSE_OPTIONS, consumer);
+    }
+
+    /**
+     * As {@link #forEachMatch(Buffer, Consumer)}, within the budget of the options, such as for an untrusted payload;
+     * the matched values are built with the options.
+     *
+     * @throws DecodeException if the bytes are not valid JSON, or
+     *                         {@link io.github.sinri.keel.utils.json.JsonParseBudgetExceededException} if beyond the
+     *                         budget
+     */
+    public void forEachMatch(@Nonnull Buffer json, @Nonnull JsonParseOptions options, @Nonnull Consumer<Object> consumer) {
+        if (!streamable) {
+            iterate(JsonTreeParser.parseValue(json, options)).forEachRemaining(consumer);
+            return;
+        }
+        JsonTreeParser.readTokens(json, options, parser -> streamMatches(parser, 0, options, consumer));
+    }
+
+    /**
+     * @return all the matched values over the raw bytes; see {@link #forEachMatch(Buffer, Consumer)}.
+     */
+    @Nonnull
+    public List<Object> evaluate(@Nonnull Buffer json) {
+        List<Object> list = new ArrayList<>();
+        forEachMatch(json, list::add);
+        return list;
+    }
+
+    /**
+     * Match from the value starting at the current token, leaving the parser at the last token of the value.
+     */
+    private void streamMatches(
+            @Nonnull JsonParser parser, int depth, @Nonnull JsonParseOptions options, @Nonnull Consumer<Object> consumer
+    ) throws IOException {
+        if (depth == segments.length) {
+            consumer.accept(JsonTreeParser.readValue(parser, options));
+            return;
+        }
+        Selector selector = segments[depth].selector;
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT && !(selector instanceof IndexSelector)) {
+            String name = selector instanceof NameSelector ? ((NameSelector) selector).name : null;
+            String fieldName;
+            while ((fieldName = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                if (name == null || name.equals(fieldName)) {
+                    streamMatches(parser, depth + 1, options, consumer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY && !(selector instanceof NameSelector)) {
+            int index = selector instanceof IndexSelector ? ((IndexSelector) selector).index : -1;
+            int i = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (index < 0 || index == i) {
+                    streamMatches(parser, depth + 1, options, consumer);
+                } else {
+                    parser.skipChildren();
+                }
+                i++;
+            }
+        } else {
+            parser.skipChildren();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    @Nonnull
+    private static Iterator<Object> evaluate(@Nonnull Segment[] segments, @Nullable Object current, @Nullable Object root) {
+        Iterator<Object> iterator = Collections.singletonList(current).iterator();
+        for (Segment segment : segments) {
+            iterator = new FlatMapIterator<>(iterator, node -> segment.apply(node, root));
+        }
+        return iterator;
+    }
+
+    @Nonnull
+    private static Iterator<Object> children(@Nullable Object node) {
+        Iterator<?> raw;
+        if (node instanceof JsonObject) {
+            raw = ((JsonObject) node).getMap().values().iterator();
+        } else if (node instanceof JsonArray) {
+            raw = ((JsonArray) node).getList().iterator();
+        } else {
+            return Collections.emptyIterator();
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return raw.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return RootJsonPointerIterator.jsonify(raw.next());
+            }
+        };
+    }
+
+    // ---- segments and selectors ----
+
+    private static final class Segment {
+        private final boolean descendant;
+        private final Selector selector;
+
+        private Segment(boolean descendant, @Nonnull Selector selector) {
+            this.descendant = descendant;
+            this.selector = selector;
+        }
+
+        /**
+         * @return whether this segment selects one value at most, as a name or an index.
+         */
+        private boolean isSingular() {
+            return !descendant && (selector instanceof NameSelector || selector instanceof IndexSelector);
+        }
+
+        private boolean isStreamable() {
+            if (descendant) {
+                return false;
+            }
+            return selector instanceof NameSelector
+                    || selector instanceof WildcardSelector
+                    || (selector instanceof IndexSelector && ((IndexSelector) selector).index >= 0);
+        }
+
+        @Nonnull
+        private Iterator<Object> apply(@Nullable Object node, @Nullable Object root) {
+            if (!descendant) {
+                return selector.select(node, root);
+            }
+            return new FlatMapIterator<>(new DescendantIterator(node), n -> selector.select(n, root));
+        }
+    }
+
+    private interface Selector {
+        @Nonnull
+        Iterator<Object> select(@Nullable Object node, @Nullable Object root);
+    }
+
+    private static final class NameSelector implements Selector {
+        private final String name;
+
+        private NameSelector(@Nonnull String name) {
+            this.name = name;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            if (node instanceof JsonObject) {
+                Map<String, Object> map = ((JsonObject) node).getMap();
+                if (map.containsKey(name)) {
+                    return Collections.singletonList(RootJsonPointerIterator.jsonify(map.get(name))).iterator();
+                }
+            }
+            return Collections.emptyIterator();
+        }
+    }
+
+    private static final class WildcardSelector implements Selector {
+        private static final WildcardSelector INSTANCE = new WildcardSelector();
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            return children(node);
+        }
+    }
+
+    private static final class IndexSelector implements Selector {
+        private final int index;
+
+        private IndexSelector(int index) {
+            this.index = index;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            if (node instanceof JsonArray) {
+                List<?> list = ((JsonArray) node).getList();
+                int i = index < 0 ? list.size() + index : index;
+                if (i >= 0 && i < list.size()) {
+                    return Collections.singletonList(RootJsonPointerIterator.jsonify(list.get(i))).iterator();
+                }
+            }
+            return Collections.emptyIterator();
+        }
+    }
+
+    /**
+     * As the array slice selector of RFC 9535.
+     */
+    private static final class SliceSelector implements Selector {
+        private final @Nullable Integer start;
+        private final @Nullable Integer end;
+        private final int step;
+
+        private SliceSelector(@Nullable Integer start, @Nullable Integer end, int step) {
+            this.start = start;
+            this.end = end;
+            this.step = step;
+        }
+
+        private static int normalize(int i, int length) {
+            return i >= 0 ? i : length + i;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            if (!(node instanceof JsonArray) || step == 0) {
+                return Collections.emptyIterator();
+            }
+            List<?> list = ((JsonArray) node).getList();
+            int length = list.size();
+            int lower;
+            int upper;
+            if (step > 0) {
+                lower = Math.min(Math.max(start == null ? 0 : normalize(start, length), 0), length);
+                upper = Math.min(Math.max(end == null ? length : normalize(end, length), 0), length);
+            } else {
+                upper = Math.min(Math.max(start == null ? length - 1 : normalize(start, length), -1), length - 1);
+                lower = Math.min(Math.max(end == null ? -1 : normalize(end, length), -1), length - 1);
+            }
+            return new Iterator<>() {
+                private int next = step > 0 ? lower : upper;
+
+                @Override
+                public boolean hasNext() {
+                    return step > 0 ? next < upper : next > lower;
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Object value = RootJsonPointerIterator.jsonify(list.get(next));
+                    next += step;
+                    return value;
+                }
+            };
+        }
+    }
+
+    private static final class UnionSelector implements Selector {
+        private final List<Selector> selectors;
+
+        private UnionSelector(@Nonnull List<Selector> selectors) {
+            this.selectors = selectors;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            return new FlatMapIterator<>(selectors.iterator(), selector -> selector.select(node, root));
+        }
+    }
+
+    private static final class FilterSelector implements Selector {
+        private final Expression filter;
+
+        private FilterSelector(@Nonnull Expression filter) {
+            this.filter = filter;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Object> select(@Nullable Object node, @Nullable Object root) {
+            Iterator<Object> candidates = children(node);
+            return new FlatMapIterator<>(candidates, candidate -> test(filter, candidate, root)
+                    ? Collections.singletonList(candidate).iterator()
+                    : Collections.emptyIterator());
+        }
+    }
+
+    // ---- filter expressions ----
+
+    private interface Expression {
+        /**
+         * @return the value, or {@link #NOTHING} for a path matched nothing.
+         */
+        @Nullable
+        Object evaluate(@Nullable Object current, @Nullable Object root);
+    }
+
+    /**
+     * The truth of an expression in a logical context: a path tests the existence, others are true only as
+     * {@link Boolean#TRUE}.
+     */
+    private static boolean test(@Nonnull Expression expression, @Nullable Object current, @Nullable Object root) {
+        Object value = expression.evaluate(current, root);
+        if (expression instanceof PathExpression) {
+            return value != NOTHING;
+        }
+        return Boolean.TRUE.equals(value);
+    }
+
+    private static final class PathExpression implements Expression {
+        private final boolean relative;
+        private final Segment[] segments;
+
+        private PathExpression(boolean relative, @Nonnull Segment[] segments) {
+            this.relative = relative;
+            this.segments = segments;
+        }
+
+        private boolean isSingular() {
+            return Arrays.stream(segments).allMatch(Segment::isSingular);
+        }
+
+        @Nullable
+        @Override
+        public Object evaluate(@Nullable Object current, @Nullable Object root) {
+            Iterator<Object> iterator = JsonPathQuery.evaluate(segments, relative ? current : root, root);
+            return iterator.hasNext() ? iterator.next() : NOTHING;
+        }
+    }
+
+    private static final class LiteralExpression implements Expression {
+        private final @Nullable Object value;
+
+        private LiteralExpression(@Nullable Object value) {
+            this.value = value;
+        }
+
+        @Nullable
+        @Override
+        public Object evaluate(@Nullable Object current, @Nullable Object root) {
+            return value;
+        }
+    }
+
+    private static final class NotExpression implements Expression {
+        private final Expression operand;
+
+        private NotExpression(@Nonnull Expression operand) {
+            this.operand = operand;
+        }
+
+        @Nonnull
+        @Override
+        public Object evaluate(@Nullable Object current, @Nullable Object root) {
+            return !test(operand, current, root);
+        }
+    }
+
+    private static final class LogicalExpression implements Expression {
+        private final boolean and;
+        private final Expression left;
+        private final Expression right;
+
+        private LogicalExpression(boolean and, @Nonnull Expression left, @Nonnull Expression right) {
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Nonnull
+        @Override
+        public Object evaluate(@Nullable Object current, @Nullable Object root) {
+            if (and) {
+                return test(left, current, root) && test(right, current, root);
+            }
+            return test(left, current, root) || test(right, current, root);
+        }
+    }
+
+    private static final class ComparisonExpression implements Expression {
+        private final String operator;
+        private final Expression left;
+        private final Expression right;
+
+        private ComparisonExpression(@Nonnull String operator, @Nonnull Expression left, @Nonnull Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Nonnull
+        @Override
+        public Object evaluate(@Nullable Object current, @Nullable Object root) {
+            Object l = left.evaluate(current, root);
+            Object r = right.evaluate(current, root);
+            switch (operator) {
+                case "==":
+                    return jsonEquals(l, r);
+                case "!=":
+                    return !jsonEquals(l, r);
+                case "<":
+                    return lessThan(l, r);
+                case "<=":
+                    return lessThan(l, r) || jsonEquals(l, r);
+                case ">":
+                    return lessThan(r, l);
+                case ">=":
+                    return lessThan(r, l) || jsonEquals(l, r);
+                default:
+                    throw new IllegalStateException(operator);
+            }
+        }
+
+        private static boolean lessThan(@Nullable Object l, @Nullable Object r) {
+            if (l instanceof Number && r instanceof Number) {
+                return compareNumbers((Number) l, (Number) r) < 0;
+            }
+            if (l instanceof String && r instanceof String) {
+                return ((String) l).compareTo((String) r) < 0;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isIntegral(@Nonnull Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private static int compareNumbers(@Nonnull Number l, @Nonnull Number r) {
+        if (isIntegral(l) && isIntegral(r)) {
+            return Long.compare(l.longValue(), r.longValue());
+        }
+        double a = l.doubleValue();
+        double b = r.doubleValue();
+        return a < b ? -1 : (a > b ? 1 : 0);
+    }
+
+    private static boolean jsonEquals(@Nullable Object l, @Nullable Object r) {
+        if (l == NOTHING || r == NOTHING) {
+            return l == r;
+        }
+        l = RootJsonPointerIterator.jsonify(l);
+        r = RootJsonPointerIterator.jsonify(r);
+        if (l instanceof Number && r instanceof Number) {
+            return compareNumbers((Number) l, (Number) r) == 0;
+        }
+        if (l instanceof JsonObject && r instanceof JsonObject) {
+            Map<String, Object> lm = ((JsonObject) l).getMap();
+            Map<String, Object> rm = ((JsonObject) r).getMap();
+            if (lm.size() != rm.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : lm.entrySet()) {
+                if (!rm.containsKey(entry.getKey()) || !jsonEquals(entry.getValue(), rm.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (l instanceof JsonArray && r instanceof JsonArray) {
+            List<?> ll = ((JsonArray) l).getList();
+            List<?> rl = ((JsonArray) r).getList();
+            if (ll.size() != rl.size()) {
+                return false;
+            }
+            for (int i = 0; i < ll.size(); i++) {
+                if (!jsonEquals(ll.get(i), rl.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return Objects.equals(l, r);
+    }
+
+    // ---- lazy iterators ----
+
+    /**
+     * Maps each item of the source into an iterator and chains them, lazily; null items are allowed.
+     */
+    private static final class FlatMapIterator<S> implements Iterator<Object> {
+        private final Iterator<S> source;
+        private final Function<S, Iterator<Object>> mapper;
+        private Iterator<Object> current = Collections.emptyIterator();
+
+        private FlatMapIterator(@Nonnull Iterator<S> source, @Nonnull Function<S, Iterator<Object>> mapper) {
+            this.source = source;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (!source.hasNext()) {
+                    return false;
+                }
+                current = mapper.apply(source.next());
+            }
+            return true;
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    /**
+     * Iterates the node and all its descendants, in the pre-order.
+     */
+    private static final class DescendantIterator implements Iterator<Object> {
+        private final ArrayDeque<Iterator<Object>> stack = new ArrayDeque<>();
+        private boolean selfPending = true;
+        private final @Nullable Object self;
+
+        private DescendantIterator(@Nullable Object node) {
+            this.self = node;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (selfPending) {
+                return true;
+            }
+            while (!stack.isEmpty() && !stack.peek().hasNext()) {
+                stack.pop();
+            }
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object node;
+            if (selfPending) {
+                selfPending = false;
+                node = self;
+            } else {
+                node = Objects.requireNonNull(stack.peek()).next();
+            }
+            if (node instanceof JsonObject || node instanceof JsonArray) {
+                stack.push(children(node));
+            }
+            return node;
+        }
+    }
+
+    // ---- compiler ----
+
+    private static final class Compiler {
+        private final String source;
+        private int position;
+
+        private Compiler(@Nonnull String source) {
+            this.source = source;
+        }
+
+        @Nonnull
+        private Segment[] compileQuery() {
+            skipWhitespace();
+            expect('$');
+            Segment[] segments = compileSegments();
+            skipWhitespace();
+            if (position < source.length()) {
+                throw error("Unexpected character");
+            }
+            return segments;
+        }
+
+        @Nonnull
+        private Segment[] compileSegments() {
+            List<Segment> segments = new ArrayList<>();
+            while (position < source.length()) {
+                char c = source.charAt(position);
+                if (c == '.' && peek(1) == '.') {
+                    position += 2;
+                    if (peek(0) == '[') {
+                        segments.add(new Segment(true, compileBracket()));
+                    } else if (peek(0) == '*') {
+                        position++;
+                        segments.add(new Segment(true, WildcardSelector.INSTANCE));
+                    } else {
+                        segments.add(new Segment(true, new NameSelector(compileMemberName())));
+                    }
+                } else if (c == '.') {
+                    position++;
+                    if (peek(0) == '*') {
+                        position++;
+                        segments.add(new Segment(false, WildcardSelector.INSTANCE));
+                    } else {
+                        segments.add(new Segment(false, new NameSelector(compileMemberName())));
+                    }
+                } else if (c == '[') {
+                    segments.add(new Segment(false, compileBracket()));
+                } else {
+                    break;
+                }
+            }
+            return segments.toArray(new Segment[0]);
+        }
+
+        @Nonnull
+        private String compileMemberName() {
+            int start = position;
+            while (position < source.length() && isMemberNameChar(source.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a member name");
+            }
+            return source.substring(start, position);
+        }
+
+        private static boolean isMemberNameChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-' || c == '$' || c >= 0x80;
+        }
+
+        @Nonnull
+        private Selector compileBracket() {
+            expect('[');
+            skipWhitespace();
+            if (peek(0) == '?') {
+                position++;
+                skipWhitespace();
+                Expression filter = compileOr();
+                skipWhitespace();
+                expect(']');
+                return new FilterSelector(filter);
+            }
+            List<Selector> selectors = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                selectors.add(compileBracketSelector());
+                skipWhitespace();
+                if (peek(0) == ',') {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            expect(']');
+            return selectors.size() == 1 ? selectors.get(0) : new UnionSelector(selectors);
+        }
+
+        @Nonnull
+        private Selector compileBracketSelector() {
+            char c = peek(0);
+            if (c == '\'' || c == '"') {
+                return new NameSelector(compileQuotedString());
+            }
+            if (c == '*') {
+                position++;
+                return WildcardSelector.INSTANCE;
+            }
+            Integer first = c == ':' ? null : compileInteger();
+            skipWhitespace();
+            if (peek(0) != ':') {
+                if (first == null) {
+                    throw error("Expected an index");
+                }
+                return new IndexSelector(first);
+            }
+            position++;
+            skipWhitespace();
+            Integer end = isIntegerStart(peek(0)) ? compileInteger() : null;
+            skipWhitespace();
+            int step = 1;
+            if (peek(0) == ':') {
+                position++;
+                skipWhitespace();
+                if (isIntegerStart(peek(0))) {
+                    step = compileInteger();
+                }
+            }
+            return new SliceSelector(first, end, step);
+        }
+
+        private static boolean isIntegerStart(char c) {
+            return c == '-' || (c >= '0' && c <= '9');
+        }
+
+        private int compileInteger() {
+            int start = position;
+            if (peek(0) == '-') {
+                position++;
+            }
+            while (peek(0) >= '0' && peek(0) <= '9') {
+                position++;
+            }
+            String digits = source.substring(start, position);
+            if (digits.isEmpty() || digits.equals("-") || digits.length() > 10) {
+                throw error("Expected an integer");
+            }
+            long value = Long.parseLong(digits);
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw error("Integer out of range");
+            }
+            return (int) value;
+        }
+
+        @Nonnull
+        private String compileQuotedString() {
+            char quote = source.charAt(position++);
+            StringBuilder sb = new StringBuilder();
+            while (position < source.length()) {
+                char c = source.charAt(position++);
+                if (c == quote) {
+                    return sb.toString();
+                }
+                if (c == '\\') {
+                    if (position >= source.length()) {
+                        break;
+                    }
+                    char e = source.charAt(position++);
+                    switch (e) {
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'u':
+                            if (position + 4 > source.length()) {
+                                throw error("Bad unicode escape");
+                            }
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                int digit = Character.digit(source.charAt(position++), 16);
+                                if (digit < 0) {
+                                    throw error("Bad unicode escape");
+                                }
+                                code = code * 16 + digit;
+                            }
+                            sb.append((char) code);
+                            break;
+                        default:
+                            sb.append(e);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        @Nonnull
+        private Expression compileOr() {
+            Expression left = compileAnd();
+            while (true) {
+                skipWhitespace();
+                if (source.startsWith("||", position)) {
+                    position += 2;
+                    left = new LogicalExpression(false, left, compileAnd());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        @Nonnull
+        private Expression compileAnd() {
+            Expression left = compileUnary();
+            while (true) {
+                skipWhitespace();
+                if (source.startsWith("&&", position)) {
+                    position += 2;
+                    left = new LogicalExpression(true, left, compileUnary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        @Nonnull
+        private Expression compileUnary() {
+            skipWhitespace();
+            if (peek(0) == '!' && peek(1) != '=') {
+                position++;
+                return new NotExpression(compileUnary());
+            }
+            int leftPosition = position;
+            Expression left = compileOperand();
+            skipWhitespace();
+            for (String operator : new String[]{"==", "!=", "<=", ">=", "<", ">"}) {
+                if (source.startsWith(operator, position)) {
+                    requireComparable(left, leftPosition);
+                    position += operator.length();
+                    skipWhitespace();
+                    int rightPosition = position;
+                    Expression right = compileOperand();
+                    requireComparable(right, rightPosition);
+                    return new ComparisonExpression(operator, left, right);
+                }
+            }
+            return left;
+        }
+
+        /**
+         * As RFC 9535, a path compared must be singular, since only one value could be compared; the wildcards,
+         * slices, unions, filters and descendants are for the existence tests only.
+         */
+        private void requireComparable(@Nonnull Expression operand, int operandPosition) {
+            if (operand instanceof PathExpression && !((PathExpression) operand).isSingular()) {
+                position = operandPosition;
+                throw error("Expected a singular path to compare");
+            }
+        }
+
+        @Nonnull
+        private Expression compileOperand() {
+            skipWhitespace();
+            char c = peek(0);
+            if (c == '(') {
+                position++;
+                Expression inner = compileOr();
+                skipWhitespace();
+                expect(')');
+                return inner;
+            }
+            if (c == '@' || c == '$') {
+                position++;
+                return new PathExpression(c == '@', compileSegments());
+            }
+            if (c == '\'' || c == '"') {
+                return new LiteralExpression(compileQuotedString());
+            }
+            if (isIntegerStart(c)) {
+                return new LiteralExpression(compileNumber());
+            }
+            for (String keyword : new String[]{"true", "false", "null"}) {
+                if (source.startsWith(keyword, position)) {
+                    position += keyword.length();
+                    return new LiteralExpression(keyword.equals("null") ? null : Boolean.valueOf(keyword));
+                }
+            }
+            throw error("Expected an operand");
+        }
+
+        @Nonnull
+        private Number compileNumber() {
+            int start = position;
+            if (peek(0) == '-') {
+                position++;
+            }
+            boolean decimal = false;
+            while (position < source.length()) {
+                char c = source.charAt(position);
+                if (c >= '0' && c <= '9') {
+                    position++;
+                } else if (c == '.' || c == 'e' || c == 'E'
+                        || ((c == '+' || c == '-') && (source.charAt(position - 1) | 0x20) == 'e')) {
+                    decimal = true;
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            String text = source.substring(start, position);
+            try {
+                if (decimal) {
+                    return Double.parseDouble(text);
+                }
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw error("Bad number");
+            }
+        }
+
+        private char peek(int offset) {
+            int i = position + offset;
+            return i < source.length() ? source.charAt(i) : '\0';
+        }
+
+        private void expect(char c) {
+            if (peek(0) != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        @Nonnull
+        private IllegalArgumentException error(@Nonnull String message) {
+            return new IllegalArgumentException(message + " at " + position + " in JSONPath: " + source);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Steps into a JSON tree by one token of a JSON Pointer, as {@link io.vertx.core.json.pointer.JsonPointer} does, for
+ * the readers walking the tree without building a pointer.
+ *
+ * @since 5.0.0
+ */
+final class JsonPointerSteps {
+    private JsonPointerSteps() {
+    }
+
+    /**
+     * @return the value of the key in the object, or of the index in the array; null if absent, or if the container is
+     *         neither.
+     */
+    @Nullable
+    static Object step(@Nullable Object container, @Nonnull String key) {
+        if (container instanceof JsonObject) {
+            return ((JsonObject) container).getMap().get(key);
+        }
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).get(key);
+        }
+        List<?> list;
+        if (container instanceof JsonArray) {
+            list = ((JsonArray) container).getList();
+        } else if (container instanceof List) {
+            list = (List<?>) container;
+        } else {
+            return null;
+        }
+        int index = parseIndex(key);
+        return index >= 0 && index < list.size() ? list.get(index) : null;
+    }
+
+    /**
+     * Parse the array index as {@link Integer#parseInt(String)}, which the JSON Pointer of Vert.x uses, so that the
+     * leading zeros and plus sign are accepted as well.
+     *
+     * @return the array index in the key, or -1 if it is not one.
+     */
+    static int parseIndex(@Nonnull String key) {
+        int length = key.length();
+        int i = length > 1 && key.charAt(0) == '+' ? 1 : 0;
+        if (i == length) {
+            return -1;
+        }
+        long index = 0;
+        for (; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+            if (index > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) index;
+    }
+}
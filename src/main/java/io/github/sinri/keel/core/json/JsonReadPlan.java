@@ -0,0 +1,250 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A set of typed paths to read from one entity together, compiled into a prefix trie, so that all the paths are
+ * resolved in one traversal and the shared prefixes are walked once.
+ * <p>
+ * Declare the paths once (commonly as static fields of a mapper), then read with
+ * {@link JsonObjectReadable#readAll(JsonReadPlan, Result)} into a reusable {@link Result}:
+ * <pre>{@code
+ * static final JsonReadPlan PLAN = new JsonReadPlan();
+ * static final JsonReadPlan.Path<String> CUSTOMER_NAME = PLAN.declare(String.class, "order", "customer", "name");
+ * static final JsonReadPlan.Path<Long> CUSTOMER_ID = PLAN.declare(Long.class, "order", "customer", "id");
+ *
+ * JsonReadPlan.Result result = entity.readAll(PLAN, null);
+ * String name = result.get(CUSTOMER_NAME);
+ * }</pre>
+ * The values are read as the {@code readX} methods of {@link JsonObjectReadable} do: a number is converted to the
+ * declared numeric type, and a value of another type is read as null. As the path arguments of JSON Pointer, a step
+ * on an array is the index of the item.
+ * <p>
+ * Once the plan is used to read, it is compiled and no more path could be declared. A compiled plan is thread-safe,
+ * while a result is not.
+ *
+ * @since 5.0.0
+ */
+public final class JsonReadPlan {
+    private final List<Path<?>> paths = new ArrayList<>();
+    private volatile Node compiledRoot;
+
+    /**
+     * Declare a path to read.
+     *
+     * @param type the type to read the value as
+     * @param args the steps of the path, as the JSON Pointer arguments of the {@code readX} methods
+     * @return the handle to get the value from a {@link Result}
+     * @throws IllegalStateException if the plan has been compiled
+     */
+    @Nonnull
+    public synchronized <T> Path<T> declare(@Nonnull Class<T> type, @Nonnull String... args) {
+        if (compiledRoot != null) {
+            throw new IllegalStateException("The plan has been compiled");
+        }
+        Path<T> path = new Path<>(this, paths.size(), type, args.clone());
+        paths.add(path);
+        return path;
+    }
+
+    /**
+     * @return the count of the declared paths.
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    @Nonnull
+    private Node compiled() {
+        Node root = compiledRoot;
+        if (root == null) {
+            synchronized (this) {
+                root = compiledRoot;
+                if (root == null) {
+                    root = new Node();
+                    for (Path<?> path : paths) {
+                        Node node = root;
+                        for (String step : path.steps) {
+                            node = node.children.computeIfAbsent(step, k -> new Node());
+                        }
+                        node.terminals.add(path);
+                    }
+                    root.freeze();
+                    compiledRoot = root;
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * @return a new result holder for this plan.
+     */
+    @Nonnull
+    public Result newResult() {
+        compiled();
+        return new Result(this);
+    }
+
+    /**
+     * Resolve all the paths against the root value in one traversal.
+     *
+     * @param root   the root value, commonly a {@link JsonObject}
+     * @param result the holder to fill, or null to create a new one
+     * @return the filled holder
+     */
+    @Nonnull
+    public Result resolve(@Nullable Object root, @Nullable Result result) {
+        Node compiled = compiled();
+        if (result == null) {
+            result = newResult();
+        } else if (result.plan != this) {
+            throw new IllegalArgumentException("The result is not for this plan");
+        } else {
+            Arrays.fill(result.values, null);
+        }
+        if (root != null) {
+            walk(root, compiled, result.values);
+        }
+        return result;
+    }
+
+    private static void walk(@Nonnull Object value, @Nonnull Node node, @Nonnull Object[] values) {
+        for (Path<?> path : node.terminalArray) {
+            values[path.index] = path.convert(value);
+        }
+        for (int i = 0; i < node.childSteps.length; i++) {
+            Object child = step(value, node.childSteps[i]);
+            if (child != null) {
+                walk(child, node.childNodes[i], values);
+            }
+        }
+    }
+
+    @Nullable
+    private static Object step(@Nonnull Object value, @Nonnull String step) {
+        if (value instanceof JsonObject) {
+            return ((JsonObject) value).getValue(step);
+        } else if (value instanceof Map) {
+            return RootJsonPointerIterator.jsonify(((Map<?, ?>) value).get(step));
+        } else if (value instanceof JsonArray) {
+            int index = JsonPointerSteps.parseIndex(step);
+            JsonArray array = (JsonArray) value;
+            return index >= 0 && index < array.size() ? array.getValue(index) : null;
+        } else if (value instanceof List) {
+            int index = JsonPointerSteps.parseIndex(step);
+            List<?> list = (List<?>) value;
+            return index >= 0 && index < list.size() ? RootJsonPointerIterator.jsonify(list.get(index)) : null;
+        }
+        return null;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final List<Path<?>> terminals = new ArrayList<>();
+        private String[] childSteps;
+        private Node[] childNodes;
+        private Path<?>[] terminalArray;
+
+        /**
+         * Turn the collections into arrays for the traversal.
+         */
+        private void freeze() {
+            childSteps = children.keySet().toArray(new String[0]);
+            childNodes = children.values().toArray(new Node[0]);
+            terminalArray = terminals.toArray(new Path<?>[0]);
+            for (Node child : childNodes) {
+                child.freeze();
+            }
+        }
+    }
+
+    /**
+     * A declared path, as the handle to get its value from a {@link Result}.
+     *
+     * @param <T> the type to read the value as
+     */
+    public static final class Path<T> {
+        private final JsonReadPlan plan;
+        private final int index;
+        private final Class<T> type;
+        private final String[] steps;
+
+        private Path(@Nonnull JsonReadPlan plan, int index, @Nonnull Class<T> type, @Nonnull String[] steps) {
+            this.plan = plan;
+            this.index = index;
+            this.type = type;
+            this.steps = steps;
+        }
+
+        @Nonnull
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Nonnull
+        public List<String> getSteps() {
+            return List.of(steps);
+        }
+
+        @Nullable
+        private Object convert(@Nullable Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Number && type != Number.class && Number.class.isAssignableFrom(type)) {
+                Number number = (Number) value;
+                if (type == Long.class) {
+                    return number.longValue();
+                } else if (type == Integer.class) {
+                    return number.intValue();
+                } else if (type == Double.class) {
+                    return number.doubleValue();
+                } else if (type == Float.class) {
+                    return number.floatValue();
+                } else if (type == Short.class) {
+                    return number.shortValue();
+                }
+            }
+            return type.isInstance(value) ? value : null;
+        }
+    }
+
+    /**
+     * The values read by a plan, reusable for the next read with the same plan.
+     */
+    public static final class Result {
+        private final JsonReadPlan plan;
+        private final Object[] values;
+
+        private Result(@Nonnull JsonReadPlan plan) {
+            this.plan = plan;
+            this.values = new Object[plan.size()];
+        }
+
+        /**
+         * @return the value read for the path, or null if absent or of another type.
+         */
+        @Nullable
+        public <T> T get(@Nonnull Path<T> path) {
+            if (path.plan != plan) {
+                throw new IllegalArgumentException("The path is not of this plan");
+            }
+            return path.type.cast(values[path.index]);
+        }
+
+        /**
+         * @return the value read for the path, or the default value if absent or of another type.
+         */
+        @Nonnull
+        public <T> T getOrDefault(@Nonnull Path<T> path, @Nonnull T defaultValue) {
+            T value = get(path);
+            return value == null ? defaultValue : value;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * The outcome of a typed read, as a value with its status, without any exception thrown for an absent or mistyped
+ * value.
+ *
+ * @param <T> the expected type
+ * @since 5.0.0
+ */
+public final class JsonReadResult<T> {
+    private static final JsonReadResult<?> ABSENT = new JsonReadResult<>(Status.ABSENT, null);
+    private static final JsonReadResult<?> TYPE_MISMATCH = new JsonReadResult<>(Status.TYPE_MISMATCH, null);
+
+    private final @Nonnull Status status;
+    private final @Nullable T value;
+
+    private JsonReadResult(@Nonnull Status status, @Nullable T value) {
+        this.status = status;
+        this.value = value;
+    }
+
+    /**
+     * Convert the value read into the expected type.
+     *
+     * @param value     the value read, null for absent
+     * @param type      the expected type
+     * @param coercion  the mode to convert the value
+     * @return the result, in one of the statuses
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    public static <T> JsonReadResult<T> convert(@Nullable Object value, @Nonnull Class<T> type, @Nonnull JsonCoercion coercion) {
+        if (value == null) {
+            return (JsonReadResult<T>) ABSENT;
+        }
+        if (value instanceof Number && type != Number.class && Number.class.isAssignableFrom(type)) {
+            Object converted = convertNumber((Number) value, type);
+            if (converted != null) {
+                return new JsonReadResult<>(Status.FOUND, type.cast(converted));
+            }
+        }
+        if (type.isInstance(value)) {
+            return new JsonReadResult<>(Status.FOUND, type.cast(value));
+        }
+        if (coercion == JsonCoercion.LENIENT) {
+            Object coerced = coerce(value, type);
+            if (coerced != null) {
+                return new JsonReadResult<>(Status.COERCED, type.cast(coerced));
+            }
+        }
+        return (JsonReadResult<T>) TYPE_MISMATCH;
+    }
+
+    @Nullable
+    private static Object convertNumber(@Nonnull Number number, @Nonnull Class<?> type) {
+        if (type == Long.class) {
+            return number.longValue();
+        } else if (type == Integer.class) {
+            return number.intValue();
+        } else if (type == Double.class) {
+            return number.doubleValue();
+        } else if (type == Float.class) {
+            return number.floatValue();
+        } else if (type == Short.class) {
+            return number.shortValue();
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Object coerce(@Nonnull Object value, @Nonnull Class<?> type) {
+        if (type == String.class) {
+            if (value instanceof Number || value instanceof Boolean) {
+                return value.toString();
+            }
+            return null;
+        }
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String s = (String) value;
+        if (type == Boolean.class) {
+            if (s.equalsIgnoreCase("true")) {
+                return Boolean.TRUE;
+            } else if (s.equalsIgnoreCase("false")) {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+        if (type == Long.class) {
+            return parseLong(s, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (type == Integer.class) {
+            Long l = parseLong(s, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            return l == null ? null : l.intValue();
+        } else if (type == Short.class) {
+            Long l = parseLong(s, Short.MIN_VALUE, Short.MAX_VALUE);
+            return l == null ? null : l.shortValue();
+        } else if (type == Double.class) {
+            return isDecimal(s) ? Double.parseDouble(s) : null;
+        } else if (type == Float.class) {
+            return isDecimal(s) ? Float.parseFloat(s) : null;
+        } else if (type == Number.class) {
+            Long l = parseLong(s, Long.MIN_VALUE, Long.MAX_VALUE);
+            if (l != null) {
+                return l;
+            }
+            return isDecimal(s) ? Double.parseDouble(s) : null;
+        }
+        return null;
+    }
+
+    /**
+     * @return the integer in the string within the range, or null if it is not one.
+     */
+    @Nullable
+    private static Long parseLong(@Nonnull String s, long min, long max) {
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length) {
+            return null;
+        }
+        // accumulate negatively to cover Long.MIN_VALUE
+        long result = 0;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            int digit = c - '0';
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                return null;
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return null;
+            }
+            result = -result;
+        }
+        if (result < min || result > max) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the string is a number in the JSON grammar, which {@link Double#parseDouble(String)} accepts.
+     */
+    private static boolean isDecimal(@Nonnull String s) {
+        int length = s.length();
+        int i = 0;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+            digits++;
+        }
+        if (i < length && s.charAt(i) == '.') {
+            i++;
+            while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    @Nonnull
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return whether a value of the expected type is available, found or coerced.
+     */
+    public boolean isPresent() {
+        return status == Status.FOUND || status == Status.COERCED;
+    }
+
+    /**
+     * @return the value, or null if not present.
+     */
+    @Nullable
+    public T getValue() {
+        return value;
+    }
+
+    @Nonnull
+    public T getValueOrDefault(@Nonnull T defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public String toString() {
+        return isPresent() ? status + "(" + value + ")" : status.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof JsonReadResult)) return false;
+        JsonReadResult<?> that = (JsonReadResult<?>) o;
+        return status == that.status && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, value);
+    }
+
+    public enum Status {
+        /**
+         * A value of the expected type, or a number converted to the expected numeric type.
+         */
+        FOUND,
+        /**
+         * A value converted in {@link JsonCoercion#LENIENT}, such as a numeric string to a number.
+         */
+        COERCED,
+        /**
+         * No value, or a JSON null.
+         */
+        ABSENT,
+        /**
+         * A value not convertible to the expected type.
+         */
+        TYPE_MISMATCH
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.impl.JsonUtil;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deep copies a JSON tree by walking it, without encoding and parsing it again.
+ * <p>
+ * Unlike {@link JsonObject#copy()}, a nested entity is copied as a JSON object of its own, as the parsed copy would
+ * have it, instead of being shared by {@link io.vertx.core.shareddata.Shareable#copy()}; so are the values encoded as
+ * strings by Vert.x: an {@link Instant} as its ISO-8601 string, an {@link Enum} as its name, and the bytes of a
+ * {@code byte[]} or a {@link Buffer} in Base64.
+ *
+ * @since 5.0.0
+ */
+final class JsonTreeCopier {
+    private JsonTreeCopier() {
+    }
+
+    /**
+     * @return the deep copy, or null if there is a value the copier does not know, to be copied by parsing instead.
+     */
+    @Nullable
+    static JsonObject copy(@Nonnull JsonObject jsonObject) {
+        try {
+            return new JsonObject(copyMap(jsonObject.getMap()));
+        } catch (UnknownValueException e) {
+            return null;
+        }
+    }
+
+    @Nonnull
+    private static Map<String, Object> copyMap(@Nonnull Map<String, Object> map) {
+        Map<String, Object> copy = new LinkedHashMap<>(Math.max(16, (int) (map.size() / .75f) + 1));
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @Nonnull
+    private static List<Object> copyList(@Nonnull List<?> list) {
+        List<Object> copy = new ArrayList<>(list.size());
+        for (Object item : list) {
+            copy.add(copyValue(item));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Object copyValue(@Nullable Object value) {
+        if (value == null
+                || value instanceof String
+                || value instanceof Number
+                || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Instant) {
+            return DateTimeFormatter.ISO_INSTANT.format((Instant) value);
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof JsonObject) {
+            return new JsonObject(copyMap(((JsonObject) value).getMap()));
+        }
+        if (value instanceof Map) {
+            return copyMap((Map<String, Object>) value);
+        }
+        if (value instanceof JsonArray) {
+            return new JsonArray(copyList(((JsonArray) value).getList()));
+        }
+        if (value instanceof List) {
+            return copyList((List<?>) value);
+        }
+        if (value instanceof JsonObjectConvertible) {
+            return new JsonObject(copyMap(((JsonObjectConvertible) value).toJsonObject().getMap()));
+        }
+        if (value instanceof byte[]) {
+            return JsonUtil.BASE64_ENCODER.encodeToString((byte[]) value);
+        }
+        if (value instanceof Buffer) {
+            return JsonUtil.BASE64_ENCODER.encodeToString(((Buffer) value).getBytes());
+        }
+        throw new UnknownValueException();
+    }
+
+    private static final class UnknownValueException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private UnknownValueException() {
+            super(null, null, false, false);
+        }
+    }
+}
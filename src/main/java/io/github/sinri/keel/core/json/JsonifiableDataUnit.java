@@ -1,5 +1,11 @@
 package io.github.sinri.keel.core.json;
 
+import io.github.sinri.keel.utils.json.JsonParseBudget;
+import io.github.sinri.keel.utils.json.JsonParseBudgetExceededException;
+import io.github.sinri.keel.utils.json.JsonParseOptions;
+import io.github.sinri.keel.utils.json.JsonTreeParser;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.json.pointer.JsonPointer;
@@ -21,17 +27,19 @@ public interface JsonifiableDataUnit
         UnmodifiableJsonifiableEntity, ClusterSerializable {
     @Nullable
     default <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
-        try {
-            JsonPointer jsonPointer = JsonPointer.create();
-            Class<T> tClass = func.apply(jsonPointer);
-            Object o = jsonPointer.queryJson(toJsonObject());
-            if (o == null) {
-                return null;
-            }
-            return tClass.cast(o);
-        } catch (ClassCastException castException) {
-            return null;
-        }
+        JsonPointer jsonPointer = JsonPointer.create();
+        Class<T> tClass = func.apply(jsonPointer);
+        Object o = jsonPointer.queryJson(toJsonObject());
+        return JsonMetrics.castRead(this, o, tClass);
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    @Nullable
+    @Override
+    default Object readEntry(@Nonnull String key) {
+        return RootJsonPointerIterator.jsonify(toJsonObject().getMap().get(key));
     }
 
     @Override
@@ -57,11 +65,12 @@ public interface JsonifiableDataUnit
 
     @Override
     default void writeToBuffer(Buffer buffer) {
-        this.toJsonObject().writeToBuffer(buffer);
+        JsonMetrics.writeToBuffer(this, this.toJsonObject(), buffer);
     }
 
     /**
-     * Following {@link JsonObject#readFromBuffer(int, Buffer)}
+     * Following {@link JsonObject#readFromBuffer(int, Buffer)}; as of 5.0.0, the compressed frames written by
+     * {@link JsonFrames} are read as well, and the JSON is parsed within {@link JsonParseBudget#getDefault()} if set.
      *
      * @param pos    the position where to start reading the {@code buffer}
      * @param buffer the {@link Buffer} where the serialized bytes must be read from
@@ -69,11 +78,66 @@ public interface JsonifiableDataUnit
      */
     @Override
     default int readFromBuffer(int pos, Buffer buffer) {
-        int length = buffer.getInt(pos);
-        int start = pos + 4;
-        Buffer buf = buffer.getBuffer(start, start + length);
-        this.reloadData(new JsonObject(buf));
-        return pos + length + 4;
+        Object event = JsonFlightRecorder.beginReadFromBuffer();
+        long begin = JsonMetrics.isEnabled() || event != null ? System.nanoTime() : 0L;
+        int frameLength = JsonFrames.frameLength(pos, buffer);
+        try {
+            this.reloadData(JsonTreeParser.parseJsonObject(JsonFrames.readJson(pos, buffer)));
+        } catch (JsonParseBudgetExceededException e) {
+            JsonMetrics.recordBudgetViolation(this);
+            throw e;
+        }
+        if (JsonMetrics.isEnabled() || event != null) {
+            JsonMetrics.recordReadFromBuffer(this, event, begin, frameLength);
+        }
+        return pos + frameLength;
+    }
+
+    /**
+     * Following {@link #readFromBuffer(int, Buffer)}, with the modes in the options applied during parsing.
+     *
+     * @param pos     the position where to start reading the {@code buffer}
+     * @param buffer  the {@link Buffer} where the serialized bytes must be read from
+     * @param options the options to parse with, such as interning the keys or projecting to some paths
+     * @return the position where the next byte to be read would be
+     * @since 5.0.0
+     */
+    default int readFromBuffer(int pos, Buffer buffer, @Nonnull JsonParseOptions options) {
+        Object event = JsonFlightRecorder.beginReadFromBuffer();
+        long begin = JsonMetrics.isEnabled() || event != null ? System.nanoTime() : 0L;
+        int frameLength = JsonFrames.frameLength(pos, buffer);
+        try {
+            this.reloadData(JsonFrames.readJson(pos, buffer, options.getEffectiveBudget()), options);
+        } catch (JsonParseBudgetExceededException e) {
+            JsonMetrics.recordBudgetViolation(this);
+            throw e;
+        }
+        if (JsonMetrics.isEnabled() || event != null) {
+            JsonMetrics.recordReadFromBuffer(this, event, begin, frameLength);
+        }
+        return pos + frameLength;
+    }
+
+    /**
+     * A COPIED {@link JsonObject} instance, by walking the tree of {@link #toJsonObject()} instead of encoding and
+     * parsing it; if there is a value not of JSON, it is copied by parsing as
+     * {@link UnmodifiableJsonifiableEntity#cloneAsJsonObject()} does.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    @Override
+    default JsonObject cloneAsJsonObject() {
+        Object event = JsonFlightRecorder.beginClone();
+        long start = JsonMetrics.isEnabled() || event != null ? System.nanoTime() : 0L;
+        JsonObject clone = JsonTreeCopier.copy(toJsonObject());
+        if (clone == null) {
+            clone = new JsonObject(toJsonExpression());
+        }
+        if (JsonMetrics.isEnabled() || event != null) {
+            JsonMetrics.recordClone(this, event, start, clone);
+        }
+        return clone;
     }
 
     @Override
@@ -83,6 +147,65 @@ public interface JsonifiableDataUnit
 
     @Override
     default String toJsonExpression() {
-        return toJsonObject().encode();
+        return JsonMetrics.encode(this, toJsonObject());
+    }
+
+    /**
+     * Asynchronous {@link #writeToBuffer(Buffer)} into a new buffer, with the default {@link JsonOffloadOptions}.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<Buffer> writeToBufferAsync(@Nonnull Vertx vertx) {
+        return writeToBufferAsync(vertx, JsonOffloadOptions.getDefault());
+    }
+
+    /**
+     * Asynchronous {@link #writeToBuffer(Buffer)} into a new buffer, offloaded as
+     * {@link #encodeAsync(Vertx, JsonOffloadOptions)}.
+     *
+     * @return the future of the buffer written, completed on the context of the caller
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<Buffer> writeToBufferAsync(@Nonnull Vertx vertx, @Nonnull JsonOffloadOptions options) {
+        boolean inline = JsonOffloading.isInlineFor(toJsonObject(), options);
+        return JsonOffloading.run(vertx, inline, options, () -> {
+            Buffer buffer = Buffer.buffer();
+            writeToBuffer(buffer);
+            return buffer;
+        });
+    }
+
+    /**
+     * Asynchronous reload from the JSON expression in the buffer, with the default {@link JsonOffloadOptions}.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<Void> reloadDataAsync(@Nonnull Vertx vertx, @Nonnull Buffer buffer) {
+        return reloadDataAsync(vertx, buffer, JsonOffloadOptions.getDefault());
+    }
+
+    /**
+     * Asynchronous reload from the JSON expression in the buffer: the parsing is in place for a small buffer,
+     * otherwise offloaded as the options tell; the reload itself is always done on the context of the caller.
+     * <p>
+     * The JSON is parsed within {@link JsonParseBudget#getDefault()} if set.
+     *
+     * @param vertx   the Vert.x instance to offload with
+     * @param buffer  the buffer of a JSON object expression
+     * @param options the options of offloading
+     * @return the future completed after reloaded
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<Void> reloadDataAsync(@Nonnull Vertx vertx, @Nonnull Buffer buffer, @Nonnull JsonOffloadOptions options) {
+        boolean inline = JsonOffloading.isInline(buffer.length(), options);
+        return JsonOffloading.run(vertx, inline, options, () -> JsonTreeParser.parseJsonObject(buffer))
+                             .map(jsonObject -> {
+                                 reloadData(jsonObject);
+                                 return null;
+                             });
     }
 }
@@ -0,0 +1,789 @@
+package io.github.sinri.keel.core.json;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * A column-wise container of records of the same shape, as a compact replacement of a large
+ * {@code List<JsonifiableDataUnit>}.
+ * <p>
+ * Each top-level key of the records takes one column, typed by its first non-null value:
+ * <ul>
+ *     <li>integral numbers are kept in a {@code long[]}, doubles in a {@code double[]}; floats are kept as is, as a
+ *     float widened to a double would be encoded with the digits it does not have;</li>
+ *     <li>booleans are kept in bits;</li>
+ *     <li>strings are dictionary encoded, each row keeps an {@code int} code;</li>
+ *     <li>other values, and the columns seeing values of more than one type, keep the values as is.</li>
+ * </ul>
+ * Each row is read through a lightweight {@link Row} view, and the numeric columns can be scanned and aggregated in
+ * tight loops over the primitive arrays. The batch can be encoded into a JSON array or NDJSON directly, with the keys
+ * and the dictionary strings encoded only once.
+ * <p>
+ * The entries of each row are output in the order of columns, i.e. the order the keys were first seen in the batch.
+ * Rows are append-only, and the batch is not thread-safe.
+ *
+ * @since 5.0.0
+ */
+public class JsonifiableDataUnitBatch implements Iterable<JsonifiableDataUnitBatch.Row> {
+    private final LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+    private int capacity;
+    private int size = 0;
+
+    public JsonifiableDataUnitBatch() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity the count of rows to allocate the columns for at first
+     */
+    public JsonifiableDataUnitBatch(int initialCapacity) {
+        this.capacity = Math.max(1, initialCapacity);
+    }
+
+    /**
+     * Append the record as a new row.
+     *
+     * @return the index of the new row
+     */
+    public int add(@Nonnull JsonObjectConvertible record) {
+        return add(record.toJsonObject());
+    }
+
+    /**
+     * Append the record as a new row.
+     *
+     * @return the index of the new row
+     */
+    public int add(@Nonnull JsonObject record) {
+        if (size == capacity) {
+            capacity = capacity + (capacity >> 1) + 1;
+            for (Column column : columns.values()) {
+                column.grow(capacity);
+            }
+        }
+        int row = size;
+        for (Map.Entry<String, Object> entry : record.getMap().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof JsonSerializable && !(value instanceof JsonObject)) {
+                value = toJsonValue((JsonSerializable) value);
+            }
+            Column column = columns.get(key);
+            if (column == null) {
+                column = Column.forValue(key, value, capacity);
+                columns.put(key, column);
+            } else if (value != null && column.defined.isEmpty() && column instanceof ObjectColumn) {
+                // the column has seen nulls only, type it with this first non-null value
+                Column typed = Column.forValue(key, value, capacity);
+                typed.nulls.or(column.nulls);
+                column = typed;
+                columns.put(key, column);
+            } else if (value != null && !column.accepts(value)) {
+                column = new ObjectColumn(column, capacity, size);
+                columns.put(key, column);
+            }
+            column.set(row, value);
+        }
+        size++;
+        return row;
+    }
+
+    /**
+     * @return the count of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the keys of the columns, in the order of being first seen.
+     */
+    @Nonnull
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    @Nonnull
+    public Row row(int index) {
+        Objects.checkIndex(index, size);
+        return new Row(index);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Row next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return new Row(next++);
+            }
+        };
+    }
+
+    @Nonnull
+    private LongColumn longColumn(@Nonnull String name) {
+        Column column = columns.get(name);
+        if (column instanceof LongColumn) {
+            return (LongColumn) column;
+        }
+        throw new IllegalArgumentException("Column " + name + " is not an integral column");
+    }
+
+    @Nonnull
+    private DoubleColumn doubleColumn(@Nonnull String name) {
+        Column column = columns.get(name);
+        if (column instanceof DoubleColumn) {
+            return (DoubleColumn) column;
+        }
+        throw new IllegalArgumentException("Column " + name + " is not a floating column");
+    }
+
+    /**
+     * @return whether the column keeps all its values in a {@code long[]}.
+     */
+    public boolean isLongColumn(@Nonnull String name) {
+        return columns.get(name) instanceof LongColumn;
+    }
+
+    /**
+     * @return whether the column keeps all its values in a {@code double[]}.
+     */
+    public boolean isDoubleColumn(@Nonnull String name) {
+        return columns.get(name) instanceof DoubleColumn;
+    }
+
+    /**
+     * @return the sum of the values of the integral column, nulls and absent values counted as zero.
+     */
+    public long sumLong(@Nonnull String column) {
+        long[] values = longColumn(column).values;
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the values of the numeric column, nulls and absent values counted as zero.
+     */
+    public double sumDouble(@Nonnull String column) {
+        if (isLongColumn(column)) {
+            return sumLong(column);
+        }
+        double[] values = doubleColumn(column).values;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return the min of the non-null values of the integral column, or empty if none.
+     */
+    @Nonnull
+    public OptionalLong minLong(@Nonnull String column) {
+        LongColumn c = longColumn(column);
+        if (c.countDefined(size) == 0) {
+            return OptionalLong.empty();
+        }
+        long min = Long.MAX_VALUE;
+        if (c.isDense(size)) {
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, c.values[i]);
+            }
+        } else {
+            for (int i = c.defined.nextSetBit(0); i >= 0 && i < size; i = c.defined.nextSetBit(i + 1)) {
+                min = Math.min(min, c.values[i]);
+            }
+        }
+        return OptionalLong.of(min);
+    }
+
+    /**
+     * @return the max of the non-null values of the integral column, or empty if none.
+     */
+    @Nonnull
+    public OptionalLong maxLong(@Nonnull String column) {
+        LongColumn c = longColumn(column);
+        if (c.countDefined(size) == 0) {
+            return OptionalLong.empty();
+        }
+        long max = Long.MIN_VALUE;
+        if (c.isDense(size)) {
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, c.values[i]);
+            }
+        } else {
+            for (int i = c.defined.nextSetBit(0); i >= 0 && i < size; i = c.defined.nextSetBit(i + 1)) {
+                max = Math.max(max, c.values[i]);
+            }
+        }
+        return OptionalLong.of(max);
+    }
+
+    /**
+     * @return the average of the non-null values of the numeric column, or empty if none.
+     */
+    @Nonnull
+    public OptionalDouble averageDouble(@Nonnull String column) {
+        Column c = columns.get(column);
+        if (!(c instanceof LongColumn) && !(c instanceof DoubleColumn)) {
+            throw new IllegalArgumentException("Column " + column + " is not a numeric column");
+        }
+        int count = c.countDefined(size);
+        if (count == 0) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(sumDouble(column) / count);
+    }
+
+    /**
+     * @return the indices of the rows whose non-null value in the integral column matches the predicate.
+     */
+    @Nonnull
+    public BitSet selectLong(@Nonnull String column, @Nonnull LongPredicate predicate) {
+        LongColumn c = longColumn(column);
+        BitSet selected = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (c.defined.get(i) && predicate.test(c.values[i])) {
+                selected.set(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the indices of the rows whose non-null value in the floating column matches the predicate.
+     */
+    @Nonnull
+    public BitSet selectDouble(@Nonnull String column, @Nonnull DoublePredicate predicate) {
+        DoubleColumn c = doubleColumn(column);
+        BitSet selected = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (c.defined.get(i) && predicate.test(c.values[i])) {
+                selected.set(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the indices of the rows whose value in the column equals the given string; the string is compared by
+     *         its dictionary code.
+     */
+    @Nonnull
+    public BitSet selectString(@Nonnull String column, @Nonnull String value) {
+        BitSet selected = new BitSet(size);
+        Column c = columns.get(column);
+        if (c instanceof StringColumn) {
+            StringColumn sc = (StringColumn) c;
+            Integer code = sc.dictionary.get(value);
+            if (code != null) {
+                int target = code;
+                for (int i = 0; i < size; i++) {
+                    if (sc.codes[i] == target && sc.defined.get(i)) {
+                        selected.set(i);
+                    }
+                }
+            }
+        } else if (c != null) {
+            for (int i = 0; i < size; i++) {
+                if (value.equals(c.get(i))) {
+                    selected.set(i);
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the count of rows whose value in the column is {@code true}.
+     */
+    public int countTrue(@Nonnull String column) {
+        Column c = columns.get(column);
+        if (c instanceof BooleanColumn) {
+            BooleanColumn bc = (BooleanColumn) c;
+            return bc.values.get(0, size).cardinality();
+        }
+        int count = 0;
+        if (c != null) {
+            for (int i = 0; i < size; i++) {
+                if (Boolean.TRUE.equals(c.get(i))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a new JSON array of the rows as JSON objects.
+     */
+    @Nonnull
+    public JsonArray toJsonArray() {
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Row(i).toJsonObject());
+        }
+        return new JsonArray(list);
+    }
+
+    /**
+     * Write the rows as one JSON array into the buffer, in UTF-8.
+     */
+    public void writeAsJsonArray(@Nonnull Buffer buffer) {
+        RowEncoder encoder = new RowEncoder();
+        buffer.appendByte((byte) '[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                buffer.appendByte((byte) ',');
+            }
+            encoder.writeRow(buffer, i);
+        }
+        buffer.appendByte((byte) ']');
+    }
+
+    /**
+     * Write the rows as NDJSON into the buffer, in UTF-8: each row as one JSON object in one line, ended with
+     * {@code \n}.
+     */
+    public void writeAsNdjson(@Nonnull Buffer buffer) {
+        RowEncoder encoder = new RowEncoder();
+        for (int i = 0; i < size; i++) {
+            encoder.writeRow(buffer, i);
+            buffer.appendByte((byte) '\n');
+        }
+    }
+
+    /**
+     * Encodes the rows with the keys and the dictionary strings encoded once.
+     */
+    private final class RowEncoder {
+        private final List<Column> columnList = new ArrayList<>(columns.values());
+        private final byte[][] keyPrefixes = new byte[columnList.size()][];
+
+        private RowEncoder() {
+            for (int c = 0; c < columnList.size(); c++) {
+                keyPrefixes[c] = ("\"" + escape(columnList.get(c).name) + "\":").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        private void writeRow(@Nonnull Buffer buffer, int row) {
+            buffer.appendByte((byte) '{');
+            boolean first = true;
+            for (int c = 0; c < keyPrefixes.length; c++) {
+                Column column = columnList.get(c);
+                if (!column.isPresent(row)) {
+                    continue;
+                }
+                if (!first) {
+                    buffer.appendByte((byte) ',');
+                }
+                first = false;
+                buffer.appendBytes(keyPrefixes[c]);
+                if (column.defined.get(row)) {
+                    column.writeValue(buffer, row);
+                } else {
+                    buffer.appendString("null");
+                }
+            }
+            buffer.appendByte((byte) '}');
+        }
+    }
+
+    /**
+     * Converts the nested {@link JsonSerializable} value to a plain JSON value, to be kept in columns.
+     */
+    private static Object toJsonValue(@Nonnull JsonSerializable value) {
+        if (value instanceof JsonObjectConvertible) {
+            return ((JsonObjectConvertible) value).toJsonObject();
+        }
+        return new JsonObject(value.toJsonExpression());
+    }
+
+    private static String escape(@Nonnull String s) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(s));
+    }
+
+    /**
+     * A read-only view of one row of the batch.
+     */
+    public final class Row implements JsonObjectReadable {
+        private final int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public @Nullable <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
+            JsonPointer jsonPointer = JsonPointer.create();
+            Class<T> tClass = func.apply(jsonPointer);
+            Object o;
+            if (jsonPointer.isRootPointer()) {
+                o = toJsonObject();
+            } else {
+                o = jsonPointer.query(this, new RootJsonPointerIterator(this) {
+                    @Override
+                    protected boolean rootContainsKey(@Nonnull String key) {
+                        Column column = columns.get(key);
+                        return column != null && column.isPresent(index);
+                    }
+
+                    @Nullable
+                    @Override
+                    protected Object getRootValue(@Nonnull String key) {
+                        Column column = columns.get(key);
+                        return column == null ? null : column.get(index);
+                    }
+                });
+            }
+            return JsonMetrics.castRead(this, o, tClass);
+        }
+
+        @Nullable
+        @Override
+        public Object readEntry(@Nonnull String key) {
+            Column column = columns.get(key);
+            return column == null ? null : RootJsonPointerIterator.jsonify(column.get(index));
+        }
+
+        /**
+         * @return a new JSON object of this row.
+         */
+        @Nonnull
+        public JsonObject toJsonObject() {
+            JsonObject jsonObject = new JsonObject(new LinkedHashMap<>(columns.size() * 4 / 3 + 1));
+            for (Column column : columns.values()) {
+                if (column.isPresent(index)) {
+                    jsonObject.put(column.name, column.get(index));
+                }
+            }
+            return jsonObject;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (Column column : columns.values()) {
+                if (column.isPresent(index)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Nonnull
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            return toJsonObject().iterator();
+        }
+
+        @Override
+        public String toString() {
+            return toJsonObject().encode();
+        }
+    }
+
+    private abstract static class Column {
+        protected final String name;
+        /**
+         * Rows with a non-null value.
+         */
+        protected final BitSet defined = new BitSet();
+        /**
+         * Rows with the key present as JSON null.
+         */
+        protected final BitSet nulls = new BitSet();
+
+        protected Column(@Nonnull String name) {
+            this.name = name;
+        }
+
+        private static Column forValue(@Nonnull String name, @Nullable Object value, int capacity) {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                return new LongColumn(name, capacity);
+            } else if (value instanceof Double) {
+                return new DoubleColumn(name, capacity);
+            } else if (value instanceof Boolean) {
+                return new BooleanColumn(name);
+            } else if (value instanceof String) {
+                return new StringColumn(name, capacity);
+            }
+            // including null, the column would be typed again by its first non-null value
+            return new ObjectColumn(name, capacity);
+        }
+
+        final boolean isPresent(int row) {
+            return defined.get(row) || nulls.get(row);
+        }
+
+        final int countDefined(int size) {
+            return defined.get(0, size).cardinality();
+        }
+
+        final boolean isDense(int size) {
+            return defined.nextClearBit(0) >= size;
+        }
+
+        final void set(int row, @Nullable Object value) {
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                defined.set(row);
+                setValue(row, value);
+            }
+        }
+
+        @Nullable
+        final Object get(int row) {
+            return defined.get(row) ? getValue(row) : null;
+        }
+
+        abstract boolean accepts(@Nonnull Object value);
+
+        abstract void setValue(int row, @Nonnull Object value);
+
+        @Nonnull
+        abstract Object getValue(int row);
+
+        abstract void grow(int capacity);
+
+        void writeValue(@Nonnull Buffer buffer, int row) {
+            buffer.appendString(Json.encode(getValue(row)));
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private long[] values;
+
+        private LongColumn(@Nonnull String name, int capacity) {
+            super(name);
+            this.values = new long[capacity];
+        }
+
+        @Override
+        boolean accepts(@Nonnull Object value) {
+            return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+        }
+
+        @Override
+        void setValue(int row, @Nonnull Object value) {
+            values[row] = ((Number) value).longValue();
+        }
+
+        @Nonnull
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void writeValue(@Nonnull Buffer buffer, int row) {
+            buffer.appendString(Long.toString(values[row]));
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double[] values;
+
+        private DoubleColumn(@Nonnull String name, int capacity) {
+            super(name);
+            this.values = new double[capacity];
+        }
+
+        @Override
+        boolean accepts(@Nonnull Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        void setValue(int row, @Nonnull Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Nonnull
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void writeValue(@Nonnull Buffer buffer, int row) {
+            double value = values[row];
+            if (Double.isFinite(value)) {
+                buffer.appendString(Double.toString(value));
+            } else {
+                // as Jackson does by default, non-finite numbers are quoted
+                buffer.appendByte((byte) '"').appendString(Double.toString(value)).appendByte((byte) '"');
+            }
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        private BooleanColumn(@Nonnull String name) {
+            super(name);
+        }
+
+        @Override
+        boolean accepts(@Nonnull Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        void setValue(int row, @Nonnull Object value) {
+            values.set(row, (Boolean) value);
+        }
+
+        @Nonnull
+        @Override
+        Object getValue(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        void grow(int capacity) {
+            // BitSet grows itself
+        }
+
+        @Override
+        void writeValue(@Nonnull Buffer buffer, int row) {
+            buffer.appendString(values.get(row) ? "true" : "false");
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        private final HashMap<String, Integer> dictionary = new HashMap<>();
+        private final List<String> words = new ArrayList<>();
+        private final List<byte[]> encodedWords = new ArrayList<>();
+        private int[] codes;
+
+        private StringColumn(@Nonnull String name, int capacity) {
+            super(name);
+            this.codes = new int[capacity];
+        }
+
+        @Override
+        boolean accepts(@Nonnull Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        void setValue(int row, @Nonnull Object value) {
+            String word = (String) value;
+            Integer code = dictionary.get(word);
+            if (code == null) {
+                code = words.size();
+                dictionary.put(word, code);
+                words.add(word);
+                encodedWords.add(null);
+            }
+            codes[row] = code;
+        }
+
+        @Nonnull
+        @Override
+        Object getValue(int row) {
+            return words.get(codes[row]);
+        }
+
+        @Override
+        void grow(int capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+
+        @Override
+        void writeValue(@Nonnull Buffer buffer, int row) {
+            int code = codes[row];
+            byte[] encoded = encodedWords.get(code);
+            if (encoded == null) {
+                encoded = ("\"" + escape(words.get(code)) + "\"").getBytes(StandardCharsets.UTF_8);
+                encodedWords.set(code, encoded);
+            }
+            buffer.appendBytes(encoded);
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        private ObjectColumn(@Nonnull String name, int capacity) {
+            super(name);
+            this.values = new Object[capacity];
+        }
+
+        /**
+         * Convert a typed column to keep the values as is, as it sees a value of another type.
+         */
+        private ObjectColumn(@Nonnull Column typed, int capacity, int size) {
+            this(typed.name, capacity);
+            for (int i = 0; i < size; i++) {
+                if (typed.defined.get(i)) {
+                    set(i, typed.getValue(i));
+                } else if (typed.nulls.get(i)) {
+                    set(i, null);
+                }
+            }
+        }
+
+        @Override
+        boolean accepts(@Nonnull Object value) {
+            return true;
+        }
+
+        @Override
+        void setValue(int row, @Nonnull Object value) {
+            values[row] = value;
+        }
+
+        @Nonnull
+        @Override
+        Object getValue(int row) {
+            return values[row];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+}
@@ -5,11 +5,15 @@ import io.vertx.core.json.JsonObject;
 import javax.annotation.Nonnull;
 
 /**
+ * As of 5.0.0, the wrapped {@link JsonObject} is held in a volatile field, so that a reload is seen by the readers on
+ * other threads; for a data unit reloaded while read concurrently, such as a configuration, see
+ * {@link VersionedJsonifiableDataUnitImpl}.
+ *
  * @since 4.1.1
  */
 public class JsonifiableDataUnitImpl implements JsonifiableDataUnit {
     @Nonnull
-    private JsonObject jsonObject;
+    private volatile JsonObject jsonObject;
 
     public JsonifiableDataUnitImpl(@Nonnull JsonObject jsonObject) {
         this.jsonObject = jsonObject;
@@ -32,7 +36,7 @@ public class JsonifiableDataUnitImpl implements JsonifiableDataUnit {
 
     @Override
     public String toJsonExpression() {
-        return jsonObject.encode();
+        return JsonMetrics.encode(this, jsonObject);
     }
 
     @Override
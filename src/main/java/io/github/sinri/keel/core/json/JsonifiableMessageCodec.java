@@ -0,0 +1,148 @@
+package io.github.sinri.keel.core.json;
+
+import io.github.sinri.keel.utils.json.JsonTreeParser;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.ClusterSerializable;
+
+import javax.annotation.Nonnull;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.Function;
+
+/**
+ * A {@link MessageCodec} to send the entities of one class on the event bus as they are, instead of converting them to
+ * {@link JsonObject}.
+ * <p>
+ * Within the JVM, an entity is passed by reference if it is read-only, i.e. not a {@link JsonifiableDataUnit};
+ * otherwise the receiver gets a new entity over its {@link UnmodifiableJsonifiableEntity#cloneAsJsonObject()}, so that
+ * the sender could keep modifying its own.
+ * <p>
+ * Over the cluster, an entity is written in the frame of {@link ClusterSerializable#writeToBuffer(Buffer)},
+ * {@code [int length][UTF-8 JSON]}, and the receiver rebuilds an entity of the same class with the factory.
+ * <p>
+ * The event bus picks the default codec by the exact class of the body, so a subclass needs a codec of its own:
+ * <pre>{@code
+ * JsonifiableMessageCodec.registerDefault(vertx, OrderEntity.class);
+ * vertx.eventBus().send("orders", new OrderEntity(json));
+ * }</pre>
+ *
+ * @param <E> the class of the entities
+ * @since 5.0.0
+ */
+public class JsonifiableMessageCodec<E extends UnmodifiableJsonifiableEntity> implements MessageCodec<E, E> {
+    private final @Nonnull Class<E> type;
+    private final @Nonnull Function<JsonObject, ? extends E> factory;
+
+    /**
+     * @param type    the class of the entities
+     * @param factory the factory to build an entity over a JSON object, on receiving from the cluster or cloning
+     */
+    public JsonifiableMessageCodec(@Nonnull Class<E> type, @Nonnull Function<JsonObject, ? extends E> factory) {
+        this.type = type;
+        this.factory = factory;
+    }
+
+    /**
+     * @param type the class of the entities, with a public constructor accepting one only {@link JsonObject}, as
+     *             {@link UnmodifiableJsonifiableEntity} expects
+     * @throws IllegalArgumentException if there is no such constructor
+     */
+    public JsonifiableMessageCodec(@Nonnull Class<E> type) {
+        this(type, constructorFactory(type));
+    }
+
+    /**
+     * Create a codec for the class with its constructor accepting a {@link JsonObject}, and register it as the default
+     * codec of the class on the event bus.
+     *
+     * @return the registered codec
+     * @throws IllegalArgumentException if there is no such constructor
+     * @throws IllegalStateException    if a default codec has been registered for the class
+     */
+    @Nonnull
+    public static <E extends UnmodifiableJsonifiableEntity> JsonifiableMessageCodec<E> registerDefault(
+            @Nonnull Vertx vertx, @Nonnull Class<E> type
+    ) {
+        return registerDefault(vertx, type, constructorFactory(type));
+    }
+
+    /**
+     * Create a codec for the class with the factory, and register it as the default codec of the class on the event
+     * bus.
+     *
+     * @return the registered codec
+     * @throws IllegalStateException if a default codec has been registered for the class
+     */
+    @Nonnull
+    public static <E extends UnmodifiableJsonifiableEntity> JsonifiableMessageCodec<E> registerDefault(
+            @Nonnull Vertx vertx, @Nonnull Class<E> type, @Nonnull Function<JsonObject, ? extends E> factory
+    ) {
+        JsonifiableMessageCodec<E> codec = new JsonifiableMessageCodec<>(type, factory);
+        vertx.eventBus().registerDefaultCodec(type, codec);
+        return codec;
+    }
+
+    @Nonnull
+    private static <E> Function<JsonObject, E> constructorFactory(@Nonnull Class<E> type) {
+        Constructor<E> constructor;
+        try {
+            constructor = JsonObjectConstructors.get(type);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no public constructor accepting JsonObject", e);
+        }
+        return jsonObject -> {
+            try {
+                return constructor.newInstance(jsonObject);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    @Nonnull
+    public Class<E> getType() {
+        return type;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, E entity) {
+        if (entity instanceof ClusterSerializable) {
+            ((ClusterSerializable) entity).writeToBuffer(buffer);
+            return;
+        }
+        JsonObject jsonObject = entity.read(jsonPointer -> JsonObject.class);
+        JsonFrames.write(jsonObject != null ? jsonObject : entity, buffer, JsonFrameCompression.forType(entity.getClass()));
+    }
+
+    @Override
+    public E decodeFromWire(int pos, Buffer buffer) {
+        return factory.apply(JsonTreeParser.parseJsonObject(JsonFrames.readJson(pos, buffer)));
+    }
+
+    @Override
+    public E transform(E entity) {
+        if (entity instanceof JsonifiableDataUnit) {
+            return factory.apply(entity.cloneAsJsonObject());
+        }
+        return entity;
+    }
+
+    @Override
+    public String name() {
+        return "keel.json:" + type.getName();
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.sinri.keel.core.json;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+/**
+ * The Jackson Databind module of {@link JsonifiableSerializer}.
+ * <p>
+ * It is listed for {@link java.util.ServiceLoader}, so that
+ * {@link com.fasterxml.jackson.databind.ObjectMapper#findAndRegisterModules()} picks it up. With a fixed name, it is
+ * registered to a mapper once only, as Jackson ignores the modules registered again by the same name.
+ *
+ * @since 5.0.0
+ */
+public class JsonifiableModule extends SimpleModule {
+    private static final long serialVersionUID = 1L;
+    public static final String MODULE_NAME = "keel-json";
+
+    public JsonifiableModule() {
+        super(MODULE_NAME);
+        addSerializer(JsonSerializable.class, new JsonifiableSerializer());
+    }
+}
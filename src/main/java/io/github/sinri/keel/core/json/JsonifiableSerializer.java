@@ -1,11 +1,8 @@
 package io.github.sinri.keel.core.json;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 import io.vertx.core.json.jackson.DatabindCodec;
 
 import java.io.IOException;
@@ -14,25 +11,53 @@ import java.io.IOException;
  * Implements Jackson Databind Serializer for {@link JsonSerializable}.
  * <p>
  * Must call {@link JsonifiableSerializer#register()} before using any classes which implements
- * {@link JsonSerializable}.
+ * {@link JsonSerializable}, unless registered automatically: once a Vert.x instance is created, by
+ * {@link JsonifiableVertxServiceProvider}; or for an {@link com.fasterxml.jackson.databind.ObjectMapper} finding its
+ * modules, as {@link JsonifiableModule}.
  * <p>
  * As of 4.1.1, the serializer support scope moved from {@link UnmodifiableJsonifiableEntity} to
  * {@link JsonSerializable}.
+ * <p>
+ * As of 5.0.0, the registration takes effect once only, however many times called; and the value is written by
+ * {@link JsonBufferEncoder#writeValue(Object, JsonGenerator)}, without parsing its JSON expression into a tree.
  *
  * @since 4.1.0
  */
 public class JsonifiableSerializer extends JsonSerializer<JsonSerializable> {
-    private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * Register the serializer to the Jackson Databind mapper of Vert.x, once only.
+     */
     public static void register() {
-        // 注册序列化器
-        DatabindCodec.mapper().registerModule(new SimpleModule()
-                .addSerializer(JsonSerializable.class, new JsonifiableSerializer()));
+        Registration.ensure();
+    }
+
+    /**
+     * @return whether the serializer is registered to the Jackson Databind mapper of Vert.x.
+     * @since 5.0.0
+     */
+    public static boolean isRegistered() {
+        return DatabindCodec.mapper().getRegisteredModuleIds().contains(JsonifiableModule.MODULE_NAME);
     }
 
     @Override
     public void serialize(JsonSerializable value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-        JsonNode jsonNode = objectMapper.readTree(value.toJsonExpression());
-        gen.writeTree(jsonNode);
+        Object event = JsonFlightRecorder.beginSerialize();
+        JsonBufferEncoder.writeValue(value, gen);
+        JsonFlightRecorder.commitEstimated(event, value.getClass(), value);
+    }
+
+    /**
+     * The lazy holder of the registration, initialized on the first call of {@link #register()}.
+     */
+    private static final class Registration {
+        static {
+            // 注册序列化器
+            DatabindCodec.mapper().registerModule(new JsonifiableModule());
+        }
+
+        private static void ensure() {
+            // the registration is done by the class initialization
+        }
     }
 }
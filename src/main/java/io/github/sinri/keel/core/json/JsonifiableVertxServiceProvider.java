@@ -0,0 +1,17 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.internal.VertxBootstrap;
+import io.vertx.core.spi.VertxServiceProvider;
+
+/**
+ * Registers {@link JsonifiableSerializer} as a Vert.x instance is created, loaded by Vert.x from
+ * {@code META-INF/services/io.vertx.core.spi.VertxServiceProvider}.
+ *
+ * @since 5.0.0
+ */
+public class JsonifiableVertxServiceProvider implements VertxServiceProvider {
+    @Override
+    public void init(VertxBootstrap builder) {
+        JsonifiableSerializer.register();
+    }
+}
@@ -40,6 +40,8 @@ public class JsonifiedThrowable extends JsonifiableDataUnitImpl {
             @Nonnull Set<String> ignorableStackPackageSet,
             boolean omitIgnoredStack
     ) {
+        Object event = JsonFlightRecorder.beginWrapThrowable();
+        int chained = 1;
         JsonifiedThrowable x = new JsonifiedThrowable();
         x.ensureEntry("class", throwable.getClass().getName());
         x.ensureEntry("message", throwable.getMessage());
@@ -62,7 +64,9 @@ public class JsonifiedThrowable extends JsonifiableDataUnitImpl {
             upper = current;
 
             cause = cause.getCause();
+            chained++;
         }
+        JsonFlightRecorder.commit(event, throwable.getClass(), chained);
         return x;
     }
 
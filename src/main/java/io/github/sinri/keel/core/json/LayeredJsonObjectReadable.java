@@ -0,0 +1,271 @@
+package io.github.sinri.keel.core.json;
+
+import io.github.sinri.keel.utils.json.JsonMerger;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+import io.vertx.core.json.pointer.JsonPointerIterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A read-through view over layered JSON objects, reading as if they were merged by a {@link JsonMerger}, without
+ * building the merged tree: a read walks the layers along the path, and only the value read is merged if it is an
+ * object or an array present in more than one layer.
+ * <p>
+ * The layers are held by reference, so the view reflects their later changes. Reading the root, as
+ * {@link #readAll(JsonReadPlan, JsonReadPlan.Result)} and {@link #queryJsonPath(String)} do, builds the whole merged
+ * tree; use {@link #toMergedJsonObject()} to build it once.
+ *
+ * @since 5.0.0
+ */
+public class LayeredJsonObjectReadable implements JsonObjectReadable {
+    private final @Nonnull List<JsonObject> layers;
+    private final @Nonnull JsonMerger merger;
+
+    /**
+     * @param layers the layers from the lowest to the highest priority
+     * @param merger the merger defining how the layers are merged
+     */
+    public LayeredJsonObjectReadable(@Nonnull List<JsonObject> layers, @Nonnull JsonMerger merger) {
+        this.layers = List.copyOf(layers);
+        this.merger = merger;
+    }
+
+    /**
+     * @param layers the layers from the lowest to the highest priority, merged by the default {@link JsonMerger}
+     */
+    public LayeredJsonObjectReadable(@Nonnull List<JsonObject> layers) {
+        this(layers, new JsonMerger());
+    }
+
+    @Nonnull
+    public static LayeredJsonObjectReadable of(@Nonnull JsonObject... layers) {
+        return new LayeredJsonObjectReadable(Arrays.asList(layers));
+    }
+
+    @Nonnull
+    public List<JsonObject> getLayers() {
+        return layers;
+    }
+
+    /**
+     * @return the merged JSON object of all the layers, sharing the unmodified subtrees with them.
+     */
+    @Nonnull
+    public JsonObject toMergedJsonObject() {
+        return merger.merge(layers);
+    }
+
+    @Nullable
+    @Override
+    public <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
+        JsonPointer jsonPointer = JsonPointer.create();
+        Class<T> tClass = func.apply(jsonPointer);
+        Object o;
+        if (jsonPointer.isRootPointer()) {
+            o = toMergedJsonObject();
+        } else {
+            o = resolve(jsonPointer.query(new Candidates(true, new ArrayList<>(layers)), new LayerIterator()));
+        }
+        return JsonMetrics.castRead(this, o, tClass);
+    }
+
+    @Nullable
+    @Override
+    public Object readEntry(@Nonnull String key) {
+        return resolve(new LayerIterator().getObjectParameter(new Candidates(true, new ArrayList<>(layers)), key, false));
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (JsonObject layer : layers) {
+            keys.addAll(layer.fieldNames());
+        }
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(keys.size());
+        Candidates root = new Candidates(true, new ArrayList<>(layers));
+        LayerIterator iterator = new LayerIterator();
+        for (String key : keys) {
+            Object value = iterator.getObjectParameter(root, key, false);
+            if (value != null || !merger.isNullRemovesKey()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, resolve(value)));
+            }
+        }
+        return entries.iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    @Override
+    public String toString() {
+        return toMergedJsonObject().encode();
+    }
+
+    /**
+     * @return the value read, with the containers present in more than one layer merged.
+     */
+    @Nullable
+    private Object resolve(@Nullable Object found) {
+        if (!(found instanceof Candidates)) {
+            return found;
+        }
+        List<Object> values = ((Candidates) found).values;
+        if (values.size() == 1) {
+            return RootJsonPointerIterator.jsonify(values.get(0));
+        }
+        return merger.mergeValues(values);
+    }
+
+    /**
+     * Normalize the values present on one path of the layers, as the merger would see them.
+     *
+     * @return {@link Candidates} of the containers to continue walking into, or the scalar value
+     */
+    @Nullable
+    private Object normalize(@Nonnull List<Object> values) {
+        int last = values.size() - 1;
+        Object top = values.get(last);
+        if (isObject(top)) {
+            int from = last;
+            while (from > 0 && isObject(values.get(from - 1))) {
+                from--;
+            }
+            return new Candidates(true, values.subList(from, last + 1));
+        }
+        if (isArray(top)) {
+            switch (merger.getArrayMergeStrategy()) {
+                case CONCAT:
+                    int from = last;
+                    while (from > 0 && isArray(values.get(from - 1))) {
+                        from--;
+                    }
+                    return new Candidates(false, values.subList(from, last + 1));
+                case MERGE_BY_KEY:
+                    // merged at this path, as the items could not be matched lazily
+                    return new Candidates(false, List.of(Objects.requireNonNull(merger.mergeValues(values))));
+                default:
+                    return new Candidates(false, List.of(top));
+            }
+        }
+        return top;
+    }
+
+    private static boolean isObject(@Nullable Object value) {
+        return value instanceof JsonObject || value instanceof Map;
+    }
+
+    private static boolean isArray(@Nullable Object value) {
+        return value instanceof JsonArray || value instanceof List;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private static Map<String, Object> asMap(@Nonnull Object value) {
+        return value instanceof JsonObject ? ((JsonObject) value).getMap() : (Map<String, Object>) value;
+    }
+
+    @Nonnull
+    private static List<?> asList(@Nonnull Object value) {
+        return value instanceof JsonArray
+                ? ((JsonArray) value).getList()
+                : (List<?>) value;
+    }
+
+    /**
+     * The objects or arrays on one path from the layers to be merged, from the lowest to the highest priority.
+     */
+    private static final class Candidates {
+        private final boolean object;
+        private final List<Object> values;
+
+        private Candidates(boolean object, @Nonnull List<Object> values) {
+            this.object = object;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Walks a JSON Pointer through the {@link Candidates} of all the layers.
+     */
+    private final class LayerIterator implements JsonPointerIterator {
+        @Override
+        public boolean isObject(Object value) {
+            return value instanceof Candidates && ((Candidates) value).object;
+        }
+
+        @Override
+        public boolean isArray(Object value) {
+            return value instanceof Candidates && !((Candidates) value).object;
+        }
+
+        @Override
+        public boolean isNull(Object value) {
+            return value == null;
+        }
+
+        @Override
+        public boolean objectContainsKey(Object value, String key) {
+            for (Object object : ((Candidates) value).values) {
+                if (asMap(object).containsKey(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Object getObjectParameter(Object value, String key, boolean createOnMissing) {
+            List<Object> present = null;
+            for (Object object : ((Candidates) value).values) {
+                Map<String, Object> map = asMap(object);
+                if (map.containsKey(key)) {
+                    if (present == null) {
+                        present = new ArrayList<>(2);
+                    }
+                    present.add(map.get(key));
+                }
+            }
+            return present == null ? null : normalize(present);
+        }
+
+        @Override
+        public Object getArrayElement(Object value, int i) {
+            if (i < 0) {
+                return null;
+            }
+            for (Object array : ((Candidates) value).values) {
+                List<?> list = asList(array);
+                if (i < list.size()) {
+                    List<Object> single = new ArrayList<>(1);
+                    single.add(list.get(i));
+                    return normalize(single);
+                }
+                i -= list.size();
+            }
+            return null;
+        }
+
+        @Override
+        public boolean writeObjectParameter(Object value, String key, Object el) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean writeArrayElement(Object value, int i, Object el) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean appendArrayElement(Object value, Object el) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A read-only entity whose JSON object is decoded on the first access, such as a view over serialized bytes kept out
+ * of the entity itself.
+ * <p>
+ * The decoder would be called at most once in common, and might be called more than once when the first accesses
+ * race, so it should be idempotent.
+ *
+ * @since 5.0.0
+ */
+public class LazyDecodedJsonifiableEntity implements UnmodifiableJsonifiableEntity {
+    private final @Nonnull Supplier<JsonObject> decoder;
+    private volatile JsonObject decoded;
+
+    public LazyDecodedJsonifiableEntity(@Nonnull Supplier<JsonObject> decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return whether the JSON object has been decoded.
+     */
+    public boolean isDecoded() {
+        return decoded != null;
+    }
+
+    @Nonnull
+    protected final JsonObject decoded() {
+        JsonObject x = decoded;
+        if (x == null) {
+            x = Objects.requireNonNull(decoder.get());
+            decoded = x;
+        }
+        return x;
+    }
+
+    @Override
+    public String toJsonExpression() {
+        return JsonMetrics.encode(this, decoded());
+    }
+
+    @Override
+    public String toFormattedJsonExpression() {
+        return decoded().encodePrettily();
+    }
+
+    @Override
+    public String toString() {
+        return toJsonExpression();
+    }
+
+    @Override
+    public @Nullable <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
+        JsonPointer jsonPointer = JsonPointer.create();
+        Class<T> tClass = func.apply(jsonPointer);
+        Object o = jsonPointer.queryJson(decoded());
+        return JsonMetrics.castRead(this, o, tClass);
+    }
+
+    @Nullable
+    @Override
+    public Object readEntry(@Nonnull String key) {
+        return RootJsonPointerIterator.jsonify(decoded().getMap().get(key));
+    }
+
+    @Nonnull
+    @Override
+    public JsonObject cloneAsJsonObject() {
+        Object event = JsonFlightRecorder.beginClone();
+        if (!JsonMetrics.isEnabled() && event == null) {
+            return decoded().copy();
+        }
+        long start = System.nanoTime();
+        JsonObject clone = decoded().copy();
+        JsonMetrics.recordClone(this, event, start, clone);
+        return clone;
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        return decoded().iterator();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return decoded().isEmpty();
+    }
+}
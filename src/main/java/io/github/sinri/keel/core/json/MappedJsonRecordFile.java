@@ -0,0 +1,540 @@
+package io.github.sinri.keel.core.json;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.github.sinri.keel.utils.json.JsonParseOptions;
+import io.github.sinri.keel.utils.json.JsonTreeParser;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Random access to the JSON object records of a huge file, either a JSON array of objects or NDJSON, through memory
+ * mappings instead of reading the whole file into the heap.
+ * <p>
+ * On opening, the file is scanned once for the boundaries of the records, kept as an offset index of 12 bytes per
+ * record; the index could be persisted beside the file and loaded next time, see {@link #open(Path, Path)}. A record
+ * is then decoded straight from its mapped region, as a {@link JsonObject}, a data unit, or a lazy view; the records
+ * could also be scanned in parallel by {@link #stream(boolean)}.
+ * <p>
+ * The file is mapped in regions of 1 GiB, so a file larger than 2 GiB is fine; the count of records is limited to
+ * {@link Integer#MAX_VALUE}. The file should not be modified while opened.
+ * <p>
+ * It is thread-safe. The mappings are released by GC only, as Java provides no way to unmap them; after
+ * {@link #close()}, the reads fail.
+ *
+ * @since 5.0.0
+ */
+public class MappedJsonRecordFile implements Closeable {
+    private static final int REGION_BITS = 30;
+    private static final long REGION_BYTES = 1L << REGION_BITS;
+    private static final int SCAN_CHUNK_BYTES = 64 * 1024;
+    private static final int INDEX_MAGIC = 0x4B4A5249;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_BYTES = 4 + 4 + 1 + 8 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4;
+
+    private final @Nonnull Path file;
+    private final @Nonnull FileChannel channel;
+    private final long fileSize;
+    private final @Nonnull MappedByteBuffer[] regions;
+    private @Nonnull Format format = Format.NDJSON;
+    private long[] starts = new long[0];
+    private int[] lengths = new int[0];
+    private int count = 0;
+    private volatile boolean closed = false;
+
+    private MappedJsonRecordFile(@Nonnull Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            int regionCount = (int) ((fileSize + REGION_BYTES - 1) >>> REGION_BITS);
+            this.regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                long position = (long) i << REGION_BITS;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION_BYTES, fileSize - position));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the file, scanning it for the index of the records.
+     *
+     * @throws DecodeException if the file is neither a JSON array nor NDJSON
+     */
+    @Nonnull
+    public static MappedJsonRecordFile open(@Nonnull Path file) throws IOException {
+        MappedJsonRecordFile recordFile = new MappedJsonRecordFile(file);
+        try {
+            recordFile.buildIndex();
+        } catch (RuntimeException e) {
+            recordFile.close();
+            throw e;
+        }
+        return recordFile;
+    }
+
+    /**
+     * Open the file with the index persisted in the index file, if the index file is of the same size and the same
+     * last modified time of the file; otherwise scan the file for the index and persist it into the index file.
+     *
+     * @throws DecodeException if the file is neither a JSON array nor NDJSON
+     */
+    @Nonnull
+    public static MappedJsonRecordFile open(@Nonnull Path file, @Nonnull Path indexFile) throws IOException {
+        MappedJsonRecordFile recordFile = new MappedJsonRecordFile(file);
+        try {
+            if (!recordFile.loadIndex(indexFile)) {
+                recordFile.buildIndex();
+                recordFile.saveIndex(indexFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            recordFile.close();
+            throw e;
+        }
+        return recordFile;
+    }
+
+    @Nonnull
+    public Path getFile() {
+        return file;
+    }
+
+    @Nonnull
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the count of the records.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decode the record at the index.
+     *
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws DecodeException           if the record is not a JSON object
+     */
+    @Nonnull
+    public JsonObject readJsonObject(int index) {
+        return readJsonObject(index, new JsonParseOptions());
+    }
+
+    /**
+     * Decode the record at the index, with the modes in the options applied during parsing.
+     *
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws DecodeException           if the record is not a JSON object
+     */
+    @Nonnull
+    public JsonObject readJsonObject(int index, @Nonnull JsonParseOptions options) {
+        return JsonTreeParser.parseJsonObject(openRecord(index), options);
+    }
+
+    /**
+     * Decode the record at the index into a new data unit.
+     */
+    @Nonnull
+    public JsonifiableDataUnit readDataUnit(int index) {
+        return new JsonifiableDataUnitImpl(readJsonObject(index));
+    }
+
+    /**
+     * Decode the record at the index into a new data unit from the factory.
+     */
+    @Nonnull
+    public <U extends JsonifiableDataUnit> U readDataUnit(int index, @Nonnull Supplier<U> factory) {
+        U unit = factory.get();
+        unit.reloadData(readJsonObject(index));
+        return unit;
+    }
+
+    /**
+     * @return a view of the record at the index, decoded on its first read.
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Nonnull
+    public LazyDecodedJsonifiableEntity view(int index) {
+        Objects.checkIndex(index, count);
+        return new LazyDecodedJsonifiableEntity(() -> readJsonObject(index));
+    }
+
+    /**
+     * @return the stream of all the records decoded in order, split by the index for the parallel stream.
+     */
+    @Nonnull
+    public Stream<JsonObject> stream(boolean parallel) {
+        return stream(parallel, new JsonParseOptions());
+    }
+
+    /**
+     * @return the stream of all the records decoded in order, with the modes in the options applied during parsing.
+     */
+    @Nonnull
+    public Stream<JsonObject> stream(boolean parallel, @Nonnull JsonParseOptions options) {
+        return StreamSupport.stream(new RecordSpliterator(0, count, options), parallel);
+    }
+
+    /**
+     * @return the stream of the bytes of the record, from its mapped regions.
+     */
+    @Nonnull
+    private InputStream openRecord(int index) {
+        if (closed) {
+            throw new IllegalStateException("The file is closed");
+        }
+        Objects.checkIndex(index, count);
+        long position = starts[index];
+        int remaining = lengths[index];
+        int region = (int) (position >>> REGION_BITS);
+        int offset = (int) (position & (REGION_BYTES - 1));
+        if (offset + remaining <= regions[region].capacity()) {
+            return new ByteBufferBackedInputStream(regions[region].slice(offset, remaining));
+        }
+        // across the regions
+        List<InputStream> parts = new ArrayList<>(2);
+        while (remaining > 0) {
+            int length = Math.min(remaining, regions[region].capacity() - offset);
+            parts.add(new ByteBufferBackedInputStream(regions[region].slice(offset, length)));
+            remaining -= length;
+            region++;
+            offset = 0;
+        }
+        return new SequenceInputStream(Collections.enumeration(parts));
+    }
+
+    private byte byteAt(long position) {
+        return regions[(int) (position >>> REGION_BITS)].get((int) (position & (REGION_BYTES - 1)));
+    }
+
+    private void buildIndex() {
+        starts = new long[1024];
+        lengths = new int[1024];
+        count = 0;
+        long position = 0;
+        while (position < fileSize && isWhitespace(byteAt(position))) {
+            position++;
+        }
+        if (position < fileSize && byteAt(position) == '[') {
+            format = Format.JSON_ARRAY;
+            scanJsonArray(position);
+        } else {
+            format = Format.NDJSON;
+            scanLines();
+        }
+    }
+
+    /**
+     * A record per line; as a JSON expression has no raw line break, only the line breaks are looked for.
+     */
+    private void scanLines() {
+        long lineStart = 0;
+        byte[] chunk = new byte[SCAN_CHUNK_BYTES];
+        int length;
+        for (long chunkStart = 0; chunkStart < fileSize; chunkStart += length) {
+            length = readChunk(chunkStart, chunk);
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] == '\n') {
+                    addRecord(lineStart, chunkStart + i);
+                    lineStart = chunkStart + i + 1;
+                }
+            }
+        }
+        addRecord(lineStart, fileSize);
+    }
+
+    /**
+     * Copy the bytes from the position into the chunk, up to the end of the region of the position.
+     *
+     * @return the count of the bytes copied
+     */
+    private int readChunk(long position, @Nonnull byte[] chunk) {
+        MappedByteBuffer region = regions[(int) (position >>> REGION_BITS)];
+        int offset = (int) (position & (REGION_BYTES - 1));
+        int length = Math.min(chunk.length, region.capacity() - offset);
+        region.get(offset, chunk, 0, length);
+        return length;
+    }
+
+    /**
+     * The records are the values in the top-level array, separated by the commas out of strings and nested values.
+     */
+    private void scanJsonArray(long arrayStart) {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long recordStart = -1;
+        byte[] chunk = new byte[SCAN_CHUNK_BYTES];
+        long chunkStart = -1;
+        int chunkLength = 0;
+        for (long position = arrayStart; position < fileSize; position++) {
+            if (position >= chunkStart + chunkLength) {
+                chunkStart = position;
+                chunkLength = readChunk(position, chunk);
+            }
+            byte b = chunk[(int) (position - chunkStart)];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"':
+                    inString = true;
+                    if (depth == 1 && recordStart < 0) {
+                        recordStart = position;
+                    }
+                    break;
+                case '[':
+                case '{':
+                    if (depth == 1 && recordStart < 0) {
+                        recordStart = position;
+                    }
+                    depth++;
+                    break;
+                case ']':
+                case '}':
+                    depth--;
+                    if (depth == 0) {
+                        if (recordStart >= 0) {
+                            addRecord(recordStart, position);
+                        }
+                        return;
+                    }
+                    break;
+                case ',':
+                    if (depth == 1) {
+                        if (recordStart < 0) {
+                            throw new DecodeException("Empty record in the JSON array at " + position);
+                        }
+                        addRecord(recordStart, position);
+                        recordStart = -1;
+                    }
+                    break;
+                default:
+                    if (depth == 1 && recordStart < 0 && !isWhitespace(b)) {
+                        recordStart = position;
+                    }
+            }
+        }
+        throw new DecodeException("The JSON array is not closed");
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Add the record between the positions, with the surrounding whitespaces trimmed; a blank one is skipped.
+     */
+    private void addRecord(long start, long end) {
+        while (start < end && isWhitespace(byteAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(byteAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        if (end - start > Integer.MAX_VALUE) {
+            throw new DecodeException("A record is larger than 2 GiB at " + start);
+        }
+        if (count == starts.length) {
+            if (count == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many records");
+            }
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, count * 2L);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        starts[count] = start;
+        lengths[count] = (int) (end - start);
+        count++;
+    }
+
+    /**
+     * Persist the index into the index file, with the size and the last modified time of the file to check against.
+     */
+    public void saveIndex(@Nonnull Path indexFile) throws IOException {
+        try (FileChannel out = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(INDEX_MAGIC)
+                  .putInt(INDEX_VERSION)
+                  .put((byte) format.ordinal())
+                  .putLong(fileSize)
+                  .putLong(Files.getLastModifiedTime(file).toMillis())
+                  .putInt(count);
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < INDEX_ENTRY_BYTES) {
+                    writeFully(out, buffer);
+                }
+                buffer.putLong(starts[i]).putInt(lengths[i]);
+            }
+            writeFully(out, buffer);
+        }
+    }
+
+    private static void writeFully(@Nonnull FileChannel out, @Nonnull ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return whether the index is loaded from the index file, which exists and matches the file.
+     */
+    private boolean loadIndex(@Nonnull Path indexFile) throws IOException {
+        if (!Files.isRegularFile(indexFile) || Files.size(indexFile) < INDEX_HEADER_BYTES) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+            readFully(in, header);
+            if (header.getInt() != INDEX_MAGIC || header.getInt() != INDEX_VERSION) {
+                return false;
+            }
+            int formatOrdinal = header.get();
+            if (formatOrdinal < 0 || formatOrdinal >= Format.values().length
+                    || header.getLong() != fileSize
+                    || header.getLong() != Files.getLastModifiedTime(file).toMillis()) {
+                return false;
+            }
+            int recordCount = header.getInt();
+            if (recordCount < 0 || in.size() != INDEX_HEADER_BYTES + (long) recordCount * INDEX_ENTRY_BYTES) {
+                return false;
+            }
+            long[] loadedStarts = new long[recordCount];
+            int[] loadedLengths = new int[recordCount];
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES * 4096);
+            int loaded = 0;
+            while (loaded < recordCount) {
+                buffer.clear();
+                buffer.limit(Math.min(buffer.capacity(), (recordCount - loaded) * INDEX_ENTRY_BYTES));
+                readFully(in, buffer);
+                while (buffer.hasRemaining()) {
+                    loadedStarts[loaded] = buffer.getLong();
+                    loadedLengths[loaded] = buffer.getInt();
+                    loaded++;
+                }
+            }
+            this.format = Format.values()[formatOrdinal];
+            this.starts = loadedStarts;
+            this.lengths = loadedLengths;
+            this.count = recordCount;
+            return true;
+        }
+    }
+
+    private static void readFully(@Nonnull FileChannel in, @Nonnull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("Unexpected end of the index file");
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * The layouts of the records in a file.
+     */
+    public enum Format {
+        /**
+         * One JSON array, the items of which are the records.
+         */
+        JSON_ARRAY,
+        /**
+         * One record per line.
+         */
+        NDJSON
+    }
+
+    /**
+     * Splits the range of the records by halves.
+     */
+    private final class RecordSpliterator implements Spliterator<JsonObject> {
+        private final @Nonnull JsonParseOptions options;
+        private int from;
+        private final int to;
+
+        private RecordSpliterator(int from, int to, @Nonnull JsonParseOptions options) {
+            this.from = from;
+            this.to = to;
+            this.options = options;
+        }
+
+        @Override
+        public boolean tryAdvance(@Nonnull Consumer<? super JsonObject> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(readJsonObject(from++, options));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(@Nonnull Consumer<? super JsonObject> action) {
+            while (from < to) {
+                action.accept(readJsonObject(from++, options));
+            }
+        }
+
+        @Nullable
+        @Override
+        public Spliterator<JsonObject> trySplit() {
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            RecordSpliterator prefix = new RecordSpliterator(from, middle, options);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.WriteStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link WriteStream} of records over a {@link NdjsonWriter}, for the event loop: the records are queued on the
+ * context, and written by the writer in batches on a worker thread, one batch at a time, so that the encoding and the
+ * I/O never block the event loop.
+ * <p>
+ * The queue is bounded by {@link #setWriteQueueMaxSize(int)} in records, as the backpressure for a
+ * {@link io.vertx.core.streams.Pipe}: {@link #writeQueueFull()} turns true at the max, and the drain handler is called
+ * once the queue gets down to half of it.
+ * <p>
+ * A record is taken as it is at {@link #write(JsonSerializable)}, on the context: the tree of a
+ * {@link JsonObjectConvertible} is copied, and the expression of another {@link JsonSerializable} is taken, so that
+ * the record could be modified once the call returns, while the heavier encoding is left to the worker thread.
+ * <p>
+ * It should be used on the context where it is created. {@link #end()} writes the queued records, then closes the
+ * writer.
+ *
+ * @since 5.0.0
+ */
+public class NdjsonWriteStream implements WriteStream<JsonSerializable> {
+    public static final int DEFAULT_WRITE_QUEUE_MAX_SIZE = 4096;
+
+    private final @Nonnull Context context;
+    private final @Nonnull NdjsonWriter writer;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private int writeQueueMaxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private int inFlight = 0;
+    private boolean busy = false;
+    private boolean drainRequired = false;
+    private @Nullable Handler<Void> drainHandler;
+    private @Nullable Handler<Throwable> exceptionHandler;
+    private @Nullable Promise<Void> endPromise;
+
+    public NdjsonWriteStream(@Nonnull Vertx vertx, @Nonnull NdjsonWriter writer) {
+        this.context = vertx.getOrCreateContext();
+        this.writer = writer;
+    }
+
+    @Nonnull
+    public NdjsonWriter getWriter() {
+        return writer;
+    }
+
+    @Override
+    public NdjsonWriteStream exceptionHandler(@Nullable Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    /**
+     * @return the future completed once the record is written to the buffer of the writer, which is then flushed as
+     *         its options tell.
+     */
+    @Override
+    public Future<Void> write(@Nonnull JsonSerializable record) {
+        if (endPromise != null) {
+            return Future.failedFuture(new IllegalStateException("The stream is ended"));
+        }
+        Promise<Void> promise = Promise.promise();
+        queue.add(new Pending(snapshotOf(record), promise));
+        if (pendingCount() >= writeQueueMaxSize) {
+            drainRequired = true;
+        }
+        writeNextBatch();
+        return promise.future();
+    }
+
+    /**
+     * @return the future completed once the queued records are written and the writer is closed.
+     */
+    @Override
+    public Future<Void> end() {
+        if (endPromise == null) {
+            endPromise = Promise.promise();
+            writeNextBatch();
+        }
+        return endPromise.future();
+    }
+
+    @Override
+    public NdjsonWriteStream setWriteQueueMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize should be positive");
+        }
+        this.writeQueueMaxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return pendingCount() >= writeQueueMaxSize;
+    }
+
+    @Override
+    public NdjsonWriteStream drainHandler(@Nullable Handler<Void> handler) {
+        this.drainHandler = handler;
+        return this;
+    }
+
+    /**
+     * @return a copy of the tree of the record, or the expression of it, not shared with the caller.
+     */
+    @Nonnull
+    private static Object snapshotOf(@Nonnull JsonSerializable record) {
+        if (record instanceof JsonObjectConvertible) {
+            JsonObject copy = JsonTreeCopier.copy(((JsonObjectConvertible) record).toJsonObject());
+            if (copy != null) {
+                return copy;
+            }
+        }
+        return new JsonExpression(record.toJsonExpression());
+    }
+
+    private int pendingCount() {
+        return queue.size() + inFlight;
+    }
+
+    private void writeNextBatch() {
+        if (busy) {
+            return;
+        }
+        if (queue.isEmpty()) {
+            if (endPromise != null) {
+                closeWriter();
+            }
+            return;
+        }
+        busy = true;
+        List<Pending> batch = new ArrayList<>(queue);
+        queue.clear();
+        inFlight = batch.size();
+        context.executeBlocking(() -> {
+            RuntimeException[] failures = new RuntimeException[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    Object record = batch.get(i).record;
+                    if (record instanceof JsonObject) {
+                        writer.write((JsonObject) record);
+                    } else {
+                        writer.write((JsonSerializable) record);
+                    }
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+            return failures;
+        }, false).onComplete(ar -> {
+            for (int i = 0; i < batch.size(); i++) {
+                Throwable failure = ar.failed() ? ar.cause() : ar.result()[i];
+                if (failure == null) {
+                    batch.get(i).promise.complete();
+                } else {
+                    batch.get(i).promise.fail(failure);
+                    reportFailure(failure);
+                }
+            }
+            inFlight = 0;
+            busy = false;
+            if (drainRequired && pendingCount() <= writeQueueMaxSize / 2) {
+                drainRequired = false;
+                Handler<Void> handler = drainHandler;
+                if (handler != null) {
+                    handler.handle(null);
+                }
+            }
+            writeNextBatch();
+        });
+    }
+
+    private void closeWriter() {
+        busy = true;
+        Promise<Void> promise = endPromise;
+        context.executeBlocking(() -> {
+            writer.close();
+            return null;
+        }, false).onComplete(ar -> {
+            if (ar.succeeded()) {
+                promise.complete();
+            } else {
+                reportFailure(ar.cause());
+                promise.fail(ar.cause());
+            }
+        });
+    }
+
+    private void reportFailure(@Nonnull Throwable failure) {
+        Handler<Throwable> handler = exceptionHandler;
+        if (handler != null) {
+            handler.handle(failure);
+        }
+    }
+
+    /**
+     * The expression of a record taken on the context, written as it is.
+     */
+    private static final class JsonExpression implements JsonSerializable {
+        private final String expression;
+
+        private JsonExpression(@Nonnull String expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public String toJsonExpression() {
+            return expression;
+        }
+
+        @Override
+        public String toFormattedJsonExpression() {
+            return new JsonObject(expression).encodePrettily();
+        }
+    }
+
+    private static final class Pending {
+        /**
+         * A {@link JsonObject} or a {@link JsonSerializable}, owned by this stream.
+         */
+        private final Object record;
+        private final Promise<Void> promise;
+
+        private Pending(@Nonnull Object record, @Nonnull Promise<Void> promise) {
+            this.record = record;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package io.github.sinri.keel.core.json;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes records, such as {@link JsonifiableDataUnit} and {@link JsonifiedThrowable}, as NDJSON (one JSON expression
+ * per line) for high-volume logs.
+ * <p>
+ * Each record is encoded by {@link JsonBufferEncoder} straight into a reusable buffer out of the heap, without a
+ * {@link String} in between; the buffer is written to the target in batches, as {@link NdjsonWriterOptions} tells.
+ * The target is either one file appended through a {@link FileChannel}, or a series of rolling segment files written
+ * through memory mappings, where each segment holds whole lines only and is truncated to its content once done.
+ * <p>
+ * It is thread-safe, with the writes serialized. The time-based flush runs on a shared daemon thread; an I/O failure
+ * there is thrown by the next call on the writer. The daemon thread holds the writer weakly, so a writer left unclosed
+ * could still be collected, though its buffered records are lost then. For the event loop, use
+ * {@link NdjsonWriteStream}.
+ *
+ * @since 5.0.0
+ */
+public class NdjsonWriter implements Closeable, Flushable {
+    private static final byte NEWLINE = '\n';
+
+    private final @Nonnull NdjsonWriterOptions options;
+    private final @Nonnull Target target;
+    private final @Nullable ScheduledFuture<?> flushTask;
+    private ByteBuf buffer;
+    private long firstBufferedNanos;
+    private long writtenRecords = 0;
+    private long writtenBytes = 0;
+    private @Nullable IOException timerFailure;
+    private boolean closed = false;
+
+    private NdjsonWriter(@Nonnull Target target, @Nonnull NdjsonWriterOptions options) {
+        this.target = target;
+        this.options = options;
+        this.buffer = allocateBuffer();
+        long interval = options.getFlushIntervalMillis();
+        if (interval > 0) {
+            this.flushTask = FlushScheduler.schedule(this, interval);
+        } else {
+            this.flushTask = null;
+        }
+    }
+
+    /**
+     * Open a writer appending to the file through a {@link FileChannel}, creating the file if absent.
+     */
+    @Nonnull
+    public static NdjsonWriter open(@Nonnull Path file, @Nonnull NdjsonWriterOptions options) throws IOException {
+        return new NdjsonWriter(new ChannelTarget(file, options.isForceOnFlush()), options);
+    }
+
+    /**
+     * Open a writer to rolling segment files in the directory, named as {@code <prefix>-000001.ndjson} onwards from
+     * the first number not taken, each written through a memory mapping of {@link NdjsonWriterOptions#getSegmentBytes()}.
+     */
+    @Nonnull
+    public static NdjsonWriter openMappedSegments(
+            @Nonnull Path directory, @Nonnull String prefix, @Nonnull NdjsonWriterOptions options
+    ) throws IOException {
+        return new NdjsonWriter(
+                new MappedSegmentsTarget(directory, prefix, options.getSegmentBytes(), options.isForceOnFlush()),
+                options
+        );
+    }
+
+    /**
+     * Write the record as one line.
+     *
+     * @throws UncheckedIOException if failed to flush
+     */
+    public synchronized void write(@Nonnull JsonSerializable record) {
+        append(record instanceof JsonObjectConvertible ? ((JsonObjectConvertible) record).toJsonObject() : record);
+    }
+
+    /**
+     * Write the JSON object as one line.
+     *
+     * @throws UncheckedIOException if failed to flush
+     */
+    public synchronized void write(@Nonnull JsonObject record) {
+        append(record);
+    }
+
+    /**
+     * Write the records in order, holding the lock once.
+     *
+     * @throws UncheckedIOException if failed to flush
+     */
+    public synchronized void writeAll(@Nonnull Iterable<? extends JsonSerializable> records) {
+        for (JsonSerializable record : records) {
+            write(record);
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void append(@Nonnull Object value) {
+        ensureOpen();
+        int start = buffer.writerIndex();
+        try {
+            JsonBufferEncoder.encode(value, buffer);
+        } catch (RuntimeException e) {
+            // drop the partial line
+            buffer.writerIndex(start);
+            throw e;
+        }
+        buffer.writeByte(NEWLINE);
+        if (start == 0) {
+            firstBufferedNanos = System.nanoTime();
+        }
+        writtenRecords++;
+        try {
+            if (buffer.readableBytes() > target.remaining()) {
+                // the record goes into the next segment, with the lines before it left in the current one
+                writeOut(start);
+                target.roll(buffer.readableBytes());
+            }
+            if (buffer.readableBytes() >= options.getBatchBytes()) {
+                writeOut(buffer.writerIndex());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the buffered bytes before the index to the target. Must be called with the lock held.
+     */
+    private void writeOut(int end) throws IOException {
+        int length = end - buffer.readerIndex();
+        if (length > 0) {
+            target.write(buffer.nioBuffer(buffer.readerIndex(), length));
+            writtenBytes += length;
+            buffer.skipBytes(length);
+        }
+        if (buffer.isReadable()) {
+            buffer.discardReadBytes();
+        } else if (buffer.capacity() > 4 * Math.max(options.getBatchBytes(), 64 * 1024)) {
+            // release the room grown for a huge record
+            buffer.release();
+            buffer = allocateBuffer();
+        } else {
+            buffer.clear();
+        }
+    }
+
+    @Nonnull
+    private ByteBuf allocateBuffer() {
+        return Unpooled.directBuffer(Math.max(options.getBatchBytes(), 1024) + 1024);
+    }
+
+    /**
+     * Write the buffered records to the target, forced if {@link NdjsonWriterOptions#isForceOnFlush()}.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        writeOut(buffer.writerIndex());
+        target.flush();
+    }
+
+    private synchronized void flushIfDue() {
+        if (closed || !buffer.isReadable()) {
+            return;
+        }
+        if (System.nanoTime() - firstBufferedNanos < TimeUnit.MILLISECONDS.toNanos(options.getFlushIntervalMillis())) {
+            return;
+        }
+        try {
+            writeOut(buffer.writerIndex());
+            target.flush();
+        } catch (IOException e) {
+            timerFailure = e;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The writer is closed");
+        }
+        IOException failure = timerFailure;
+        if (failure != null) {
+            timerFailure = null;
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * @return the count of the records written, including the buffered ones.
+     */
+    public synchronized long getWrittenRecordCount() {
+        return writtenRecords;
+    }
+
+    /**
+     * @return the count of the bytes written to the target, not including the buffered ones.
+     */
+    public synchronized long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return the file being written, which changes as the segments roll.
+     */
+    @Nonnull
+    public synchronized Path getCurrentFile() {
+        return target.currentFile();
+    }
+
+    /**
+     * Flush the buffered records and close the target.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        try {
+            writeOut(buffer.writerIndex());
+            target.flush();
+        } finally {
+            closed = true;
+            buffer.release();
+            target.close();
+        }
+    }
+
+    private interface Target {
+        /**
+         * @return the bytes could be written before rolling.
+         */
+        long remaining();
+
+        void write(@Nonnull ByteBuffer bytes) throws IOException;
+
+        /**
+         * Finish the current file and start the next one, with room for the bytes at least.
+         */
+        void roll(int minBytes) throws IOException;
+
+        void flush() throws IOException;
+
+        @Nonnull
+        Path currentFile();
+
+        void close() throws IOException;
+    }
+
+    private static final class ChannelTarget implements Target {
+        private final Path file;
+        private final FileChannel channel;
+        private final boolean force;
+
+        private ChannelTarget(@Nonnull Path file, boolean force) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.force = force;
+        }
+
+        @Override
+        public long remaining() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public void write(@Nonnull ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void roll(int minBytes) {
+            // one file only
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (force) {
+                channel.force(false);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Path currentFile() {
+            return file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class MappedSegmentsTarget implements Target {
+        private final Path directory;
+        private final String prefix;
+        private final int segmentBytes;
+        private final boolean force;
+        private int sequence = 0;
+        private Path file;
+        private FileChannel channel;
+        private MappedByteBuffer mapped;
+
+        private MappedSegmentsTarget(@Nonnull Path directory, @Nonnull String prefix, int segmentBytes, boolean force)
+                throws IOException {
+            this.directory = directory;
+            this.prefix = prefix;
+            this.segmentBytes = segmentBytes;
+            this.force = force;
+            openSegment(segmentBytes);
+        }
+
+        private void openSegment(int capacity) throws IOException {
+            do {
+                sequence++;
+                file = directory.resolve(String.format("%s-%06d.ndjson", prefix, sequence));
+            } while (Files.exists(file));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        /**
+         * Truncate the segment file to its content, as the mapping leaves the rest filled with zeros.
+         */
+        private void closeSegment() throws IOException {
+            try {
+                if (force) {
+                    mapped.force();
+                }
+                channel.truncate(mapped.position());
+            } finally {
+                channel.close();
+            }
+        }
+
+        @Override
+        public long remaining() {
+            return mapped.remaining();
+        }
+
+        @Override
+        public void write(@Nonnull ByteBuffer bytes) {
+            mapped.put(bytes);
+        }
+
+        @Override
+        public void roll(int minBytes) throws IOException {
+            int capacity = Math.max(segmentBytes, minBytes);
+            if (mapped.position() == 0) {
+                // nothing written yet, so map the same file larger instead
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                return;
+            }
+            closeSegment();
+            openSegment(capacity);
+        }
+
+        @Override
+        public void flush() {
+            if (force) {
+                mapped.force();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Path currentFile() {
+            return file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeSegment();
+        }
+    }
+
+    /**
+     * The daemon thread for the time-based flushes of all the writers.
+     */
+    private static final class FlushScheduler {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keel-ndjson-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        @Nonnull
+        private static ScheduledFuture<?> schedule(@Nonnull NdjsonWriter writer, long intervalMillis) {
+            FlushTask task = new FlushTask(writer);
+            ScheduledFuture<?> future = INSTANCE.scheduleWithFixedDelay(
+                    task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS
+            );
+            task.future = future;
+            return future;
+        }
+    }
+
+    /**
+     * The time-based flush of one writer, holding it weakly and cancelled once it is collected.
+     */
+    private static final class FlushTask implements Runnable {
+        private final WeakReference<NdjsonWriter> writerReference;
+        private volatile @Nullable ScheduledFuture<?> future;
+
+        private FlushTask(@Nonnull NdjsonWriter writer) {
+            this.writerReference = new WeakReference<>(writer);
+        }
+
+        @Override
+        public void run() {
+            NdjsonWriter writer = writerReference.get();
+            if (writer != null) {
+                writer.flushIfDue();
+                return;
+            }
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+    }
+}
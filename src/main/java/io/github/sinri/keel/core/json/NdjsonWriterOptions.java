@@ -0,0 +1,83 @@
+package io.github.sinri.keel.core.json;
+
+/**
+ * Options for {@link NdjsonWriter}.
+ * <p>
+ * The records are encoded into a reusable buffer, which is flushed to the target once it holds at least
+ * {@link #getBatchBytes()} bytes, or once its oldest record has waited for {@link #getFlushIntervalMillis()}.
+ *
+ * @since 5.0.0
+ */
+public class NdjsonWriterOptions {
+    public static final int DEFAULT_BATCH_BYTES = 256 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private int batchBytes = DEFAULT_BATCH_BYTES;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private int segmentBytes = DEFAULT_SEGMENT_BYTES;
+    private boolean forceOnFlush = false;
+
+    public NdjsonWriterOptions() {
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * @param batchBytes the size in bytes of the buffered records to flush at; 0 to flush after each record.
+     */
+    public NdjsonWriterOptions setBatchBytes(int batchBytes) {
+        if (batchBytes < 0) {
+            throw new IllegalArgumentException("batchBytes should not be negative");
+        }
+        this.batchBytes = batchBytes;
+        return this;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * @param flushIntervalMillis the max time in milliseconds a record is buffered before being flushed; 0 to flush by
+     *                            size only.
+     */
+    public NdjsonWriterOptions setFlushIntervalMillis(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis should not be negative");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        return this;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * @param segmentBytes the size in bytes of each segment file, for the memory-mapped rolling segments; a record
+     *                     larger than it takes one segment alone.
+     */
+    public NdjsonWriterOptions setSegmentBytes(int segmentBytes) {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("segmentBytes should be positive");
+        }
+        this.segmentBytes = segmentBytes;
+        return this;
+    }
+
+    public boolean isForceOnFlush() {
+        return forceOnFlush;
+    }
+
+    /**
+     * @param forceOnFlush whether to force the flushed bytes onto the storage device on each flush, for durability at
+     *                     the cost of throughput.
+     */
+    public NdjsonWriterOptions setForceOnFlush(boolean forceOnFlush) {
+        this.forceOnFlush = forceOnFlush;
+        return this;
+    }
+}
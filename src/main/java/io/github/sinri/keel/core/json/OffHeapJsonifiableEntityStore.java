@@ -0,0 +1,492 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A keyed store of JSON entities kept out of the managed heap, for a large amount of read-mostly reference data that
+ * would otherwise stay in the heap as {@link UnmodifiableJsonifiableEntity} instances and grow the GC pause time.
+ * <p>
+ * Each entity is serialized as UTF-8 JSON bytes, which is the form Vert.x decodes fastest, and appended to segments
+ * of direct memory or of memory-mapped temporary files. Only the key index (key to record address) stays in the heap.
+ * {@link #get(String)} returns a {@link LazyDecodedJsonifiableEntity} view, which decodes the record on its first
+ * read.
+ * <p>
+ * The records replaced or removed leave dead bytes in their segments; {@link #compact(double)} rewrites the live
+ * records of sparse segments and releases those segments. When the total capacity of the segments would exceed the
+ * configured max, the oldest segment is evicted with all the records in it.
+ * <p>
+ * It is thread-safe: lookups run concurrently, and writes are serialized.
+ *
+ * @since 5.0.0
+ */
+public class OffHeapJsonifiableEntityStore implements Closeable {
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final @Nullable Path mappedFileDirectory;
+    /**
+     * Key to address, as {@code segmentId << 32 | offset}.
+     */
+    private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+    /**
+     * Segment ID to segment, ordered by age.
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nextSegmentId = 0;
+    private @Nullable Segment writingSegment;
+    private long allocatedBytes = 0;
+    private long evictedRecords = 0;
+    private boolean closed = false;
+
+    private OffHeapJsonifiableEntityStore(int segmentBytes, long maxBytes, @Nullable Path mappedFileDirectory) {
+        if (segmentBytes <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentBytes is too small");
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("maxBytes should not be less than segmentBytes");
+        }
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.mappedFileDirectory = mappedFileDirectory;
+    }
+
+    /**
+     * Create a store with segments allocated in direct memory.
+     *
+     * @param segmentBytes the capacity of each segment, a record larger than it takes one segment alone
+     * @param maxBytes     the max total capacity of the segments, beyond which the oldest segments are evicted
+     */
+    public static OffHeapJsonifiableEntityStore withDirectMemory(int segmentBytes, long maxBytes) {
+        return new OffHeapJsonifiableEntityStore(segmentBytes, maxBytes, null);
+    }
+
+    /**
+     * Create a store with segments mapped from temporary files in the given directory, which are deleted once the
+     * segments are released or the store is closed.
+     *
+     * @param directory    the directory to create the segment files in
+     * @param segmentBytes the capacity of each segment, a record larger than it takes one segment alone
+     * @param maxBytes     the max total capacity of the segments, beyond which the oldest segments are evicted
+     */
+    public static OffHeapJsonifiableEntityStore withMappedFiles(@Nonnull Path directory, int segmentBytes, long maxBytes) {
+        return new OffHeapJsonifiableEntityStore(segmentBytes, maxBytes, directory);
+    }
+
+    private static long address(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentIdOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Store the entity with the key, replacing the existing one.
+     */
+    public void put(@Nonnull String key, @Nonnull JsonSerializable entity) {
+        put(key, entity.toJsonExpression());
+    }
+
+    /**
+     * Store the JSON object with the key, replacing the existing one.
+     */
+    public void put(@Nonnull String key, @Nonnull JsonObject jsonObject) {
+        put(key, jsonObject.encode());
+    }
+
+    private void put(@Nonnull String key, @Nonnull String jsonExpression) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = jsonExpression.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            putRecord(key, keyBytes, valueBytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Store the entities in bulk, holding the write lock once.
+     *
+     * @param entities     the entities to store
+     * @param keyExtractor the function to get the key of an entity
+     */
+    public <E extends JsonSerializable> void putAll(@Nonnull Iterable<E> entities, @Nonnull Function<E, String> keyExtractor) {
+        putAll(entities, keyExtractor, entity -> entity);
+    }
+
+    /**
+     * Store the entities in bulk, holding the write lock once.
+     */
+    public void putAll(@Nonnull Map<String, ? extends JsonSerializable> entities) {
+        putAll(entities.entrySet(), Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private <E> void putAll(
+            @Nonnull Iterable<E> items,
+            @Nonnull Function<E, String> keyExtractor,
+            @Nonnull Function<E, ? extends JsonSerializable> entityExtractor
+    ) {
+        lock.writeLock().lock();
+        try {
+            for (E item : items) {
+                String key = keyExtractor.apply(item);
+                putRecord(
+                        key,
+                        key.getBytes(StandardCharsets.UTF_8),
+                        entityExtractor.apply(item).toJsonExpression().getBytes(StandardCharsets.UTF_8)
+                );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void putRecord(@Nonnull String key, byte[] keyBytes, byte[] valueBytes) {
+        ensureOpen();
+        int recordBytes = RECORD_HEADER_BYTES + keyBytes.length + valueBytes.length;
+        Segment segment = segmentForAppend(recordBytes);
+        int offset = segment.used;
+        ByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset, keyBytes.length);
+        buffer.put(offset + 4, keyBytes);
+        buffer.putInt(offset + 4 + keyBytes.length, valueBytes.length);
+        buffer.put(offset + RECORD_HEADER_BYTES + keyBytes.length, valueBytes);
+        segment.used += recordBytes;
+        segment.live += recordBytes;
+
+        Long replaced = index.put(key, address(segment.id, offset));
+        if (replaced != null) {
+            markDead(replaced);
+        }
+    }
+
+    private void markDead(long address) {
+        Segment segment = segments.get(segmentIdOf(address));
+        if (segment != null) {
+            segment.live -= recordBytesAt(segment.buffer, offsetOf(address));
+        }
+    }
+
+    private static int recordBytesAt(@Nonnull ByteBuffer buffer, int offset) {
+        int keyLength = buffer.getInt(offset);
+        int valueLength = buffer.getInt(offset + 4 + keyLength);
+        return RECORD_HEADER_BYTES + keyLength + valueLength;
+    }
+
+    private Segment segmentForAppend(int recordBytes) {
+        if (writingSegment != null && writingSegment.buffer.capacity() - writingSegment.used >= recordBytes) {
+            return writingSegment;
+        }
+        int capacity = Math.max(segmentBytes, recordBytes);
+        while (!segments.isEmpty() && allocatedBytes + capacity > maxBytes) {
+            evictSegment(segments.firstEntry().getValue());
+        }
+        Segment segment = allocateSegment(capacity);
+        segments.put(segment.id, segment);
+        allocatedBytes += capacity;
+        writingSegment = segment;
+        return segment;
+    }
+
+    private Segment allocateSegment(int capacity) {
+        int id = nextSegmentId++;
+        if (mappedFileDirectory == null) {
+            return new Segment(id, ByteBuffer.allocateDirect(capacity), null);
+        }
+        try {
+            Path file = Files.createTempFile(mappedFileDirectory, "keel-entity-store-", ".seg");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(id, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity), file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Drop the segment, with the records in it which are still indexed.
+     */
+    private void evictSegment(@Nonnull Segment segment) {
+        forEachRecord(segment, (key, offset) -> {
+            if (index.remove(key, address(segment.id, offset))) {
+                evictedRecords++;
+            }
+        });
+        releaseSegment(segment);
+    }
+
+    private void releaseSegment(@Nonnull Segment segment) {
+        segments.remove(segment.id);
+        allocatedBytes -= segment.buffer.capacity();
+        if (writingSegment == segment) {
+            writingSegment = null;
+        }
+        if (segment.file != null) {
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException ignored) {
+                // the temporary file would be left
+            }
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(String key, int offset);
+    }
+
+    private static void forEachRecord(@Nonnull Segment segment, @Nonnull RecordVisitor visitor) {
+        int offset = 0;
+        while (offset < segment.used) {
+            int keyLength = segment.buffer.getInt(offset);
+            byte[] keyBytes = new byte[keyLength];
+            segment.buffer.get(offset + 4, keyBytes);
+            visitor.visit(new String(keyBytes, StandardCharsets.UTF_8), offset);
+            offset += recordBytesAt(segment.buffer, offset);
+        }
+    }
+
+    /**
+     * @return a view of the entity stored with the key, which would be decoded on its first read; or null if absent.
+     *         If the entity is replaced, removed or evicted before the first read of the view, the view reads the
+     *         current entity of the key, or an empty object if none.
+     */
+    @Nullable
+    public UnmodifiableJsonifiableEntity get(@Nonnull String key) {
+        Long address = index.get(key);
+        if (address == null) {
+            return null;
+        }
+        return new LazyDecodedJsonifiableEntity(() -> {
+            Buffer buffer = readValueBytes(key, address);
+            if (buffer == null) {
+                buffer = readValueBytes(key, null);
+            }
+            return buffer == null ? new JsonObject() : new JsonObject(buffer);
+        });
+    }
+
+    /**
+     * @return a new JSON object decoded from the entity stored with the key, or null if absent.
+     */
+    @Nullable
+    public JsonObject getJsonObject(@Nonnull String key) {
+        Buffer buffer = readValueBytes(key, null);
+        return buffer == null ? null : new JsonObject(buffer);
+    }
+
+    /**
+     * @param expectedAddress the address the key is expected to be stored at, or null for the current one.
+     * @return the bytes of the value copied into the heap, or null if the key is not stored at the expected address.
+     */
+    @Nullable
+    private Buffer readValueBytes(@Nonnull String key, @Nullable Long expectedAddress) {
+        lock.readLock().lock();
+        try {
+            Long address = index.get(key);
+            if (address == null || (expectedAddress != null && !expectedAddress.equals(address))) {
+                return null;
+            }
+            Segment segment = segments.get(segmentIdOf(address));
+            if (segment == null) {
+                return null;
+            }
+            int offset = offsetOf(address);
+            int keyLength = segment.buffer.getInt(offset);
+            int valueLength = segment.buffer.getInt(offset + 4 + keyLength);
+            byte[] bytes = new byte[valueLength];
+            segment.buffer.get(offset + RECORD_HEADER_BYTES + keyLength, bytes);
+            return Buffer.buffer(bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(@Nonnull String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Remove the entity stored with the key; its bytes are left dead until compaction.
+     *
+     * @return whether the key was stored
+     */
+    public boolean remove(@Nonnull String key) {
+        lock.writeLock().lock();
+        try {
+            Long address = index.remove(key);
+            if (address == null) {
+                return false;
+            }
+            markDead(address);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live records of the segments whose live ratio is below the given one into new segments, and release
+     * those segments.
+     *
+     * @param minLiveRatio the ratio of live bytes to used bytes, below which a segment is compacted; 1.0 to compact
+     *                     every segment with any dead byte
+     * @return the count of segments released
+     */
+    public int compact(double minLiveRatio) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            List<Segment> sparseSegments = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment.used > 0 && segment.live < segment.used && (double) segment.live / segment.used < minLiveRatio) {
+                    sparseSegments.add(segment);
+                }
+            }
+            if (sparseSegments.isEmpty()) {
+                return 0;
+            }
+            // start a new segment, so that no record is moved into a segment being compacted
+            writingSegment = null;
+            for (Segment segment : sparseSegments) {
+                // release first, so that the capacity is reused and no live record would be evicted
+                releaseSegment(segment);
+                forEachRecord(segment, (key, offset) -> {
+                    Long address = index.get(key);
+                    if (address != null && address == address(segment.id, offset)) {
+                        int keyLength = segment.buffer.getInt(offset);
+                        int valueLength = segment.buffer.getInt(offset + 4 + keyLength);
+                        byte[] keyBytes = new byte[keyLength];
+                        byte[] valueBytes = new byte[valueLength];
+                        segment.buffer.get(offset + 4, keyBytes);
+                        segment.buffer.get(offset + RECORD_HEADER_BYTES + keyLength, valueBytes);
+                        index.remove(key);
+                        putRecord(key, keyBytes, valueBytes);
+                    }
+                });
+            }
+            return sparseSegments.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the count of the stored entities.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the total capacity of the allocated segments, in bytes.
+     */
+    public long getAllocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return allocatedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the total bytes of the live records.
+     */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            long live = 0;
+            for (Segment segment : segments.values()) {
+                live += segment.live;
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the count of records evicted with their segments since the store was created.
+     */
+    public long getEvictedRecordCount() {
+        lock.readLock().lock();
+        try {
+            return evictedRecords;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The store is closed");
+        }
+    }
+
+    /**
+     * Remove all the entities and release all the segments; the views not read yet would read as empty objects.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            index.clear();
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                releaseSegment(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final ByteBuffer buffer;
+        private final @Nullable Path file;
+        private int used = 0;
+        private int live = 0;
+
+        private Segment(int id, @Nonnull ByteBuffer buffer, @Nullable Path file) {
+            this.id = id;
+            this.buffer = buffer;
+            this.file = file;
+        }
+    }
+}
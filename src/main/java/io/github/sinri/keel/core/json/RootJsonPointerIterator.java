@@ -0,0 +1,107 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+import io.vertx.core.json.pointer.JsonPointerIterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only {@link JsonPointerIterator} which resolves the first token of a {@link JsonPointer} from a root not
+ * backed by a {@link JsonObject}, and the rest tokens as {@link JsonPointerIterator#JSON_ITERATOR} does.
+ * <p>
+ * Query with the root object given to the constructor as the input, i.e. {@code pointer.query(root, iterator)}.
+ *
+ * @since 5.0.0
+ */
+abstract class RootJsonPointerIterator implements JsonPointerIterator {
+    private final @Nonnull Object root;
+
+    protected RootJsonPointerIterator(@Nonnull Object root) {
+        this.root = root;
+    }
+
+    /**
+     * Wrap the raw {@link Map} and {@link List} as {@link JsonObject} and {@link JsonArray}, as
+     * {@link JsonObject#getValue(String)} does.
+     */
+    @Nullable
+    static Object jsonify(@Nullable Object value) {
+        // the checks against classes come first, as the ones against interfaces are slow when failed
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) value;
+            return new JsonObject(map);
+        } else if (value instanceof List) {
+            return new JsonArray((List<?>) value);
+        }
+        return value;
+    }
+
+    protected abstract boolean rootContainsKey(@Nonnull String key);
+
+    @Nullable
+    protected abstract Object getRootValue(@Nonnull String key);
+
+    private boolean isRoot(Object value) {
+        return value == root;
+    }
+
+    @Override
+    public boolean isObject(Object value) {
+        return isRoot(value) || JSON_ITERATOR.isObject(value);
+    }
+
+    @Override
+    public boolean isArray(Object value) {
+        return !isRoot(value) && JSON_ITERATOR.isArray(value);
+    }
+
+    @Override
+    public boolean isNull(Object value) {
+        return !isRoot(value) && JSON_ITERATOR.isNull(value);
+    }
+
+    @Override
+    public boolean objectContainsKey(Object value, String key) {
+        if (isRoot(value)) {
+            return rootContainsKey(key);
+        }
+        return JSON_ITERATOR.objectContainsKey(value, key);
+    }
+
+    @Override
+    public Object getObjectParameter(Object value, String key, boolean createOnMissing) {
+        if (isRoot(value)) {
+            return jsonify(getRootValue(key));
+        }
+        return JSON_ITERATOR.getObjectParameter(value, key, createOnMissing);
+    }
+
+    @Override
+    public Object getArrayElement(Object value, int i) {
+        return JSON_ITERATOR.getArrayElement(value, i);
+    }
+
+    @Override
+    public boolean writeObjectParameter(Object value, String key, Object el) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean writeArrayElement(Object value, int i, Object el) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean appendArrayElement(Object value, Object el) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.sinri.keel.core.json;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A map keeping only an {@code Object[]} of values for a shared {@link JsonObjectShape}, as the backing map of a
+ * {@link io.vertx.core.json.JsonObject}; the order of keys is kept.
+ * <p>
+ * When the shape is beyond the bounds, it falls back to a {@link LinkedHashMap} (the dictionary mode) for ever.
+ * <p>
+ * Not thread-safe, as {@link LinkedHashMap}.
+ *
+ * @since 5.0.0
+ */
+final class ShapedJsonObjectMap extends AbstractMap<String, Object> {
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
+    private @Nullable JsonObjectShape shape;
+    private Object[] values;
+    private @Nullable LinkedHashMap<String, Object> dictionary;
+
+    ShapedJsonObjectMap() {
+        this.shape = JsonObjectShape.root();
+        this.values = EMPTY_VALUES;
+    }
+
+    ShapedJsonObjectMap(@Nonnull Map<String, Object> source) {
+        this.shape = JsonObjectShape.of(source.keySet());
+        if (shape == null) {
+            this.values = EMPTY_VALUES;
+            this.dictionary = new LinkedHashMap<>(source);
+        } else {
+            this.values = new Object[shape.size()];
+            int i = 0;
+            for (Object value : source.values()) {
+                values[i++] = value;
+            }
+        }
+    }
+
+    /**
+     * @return the current shape, or null in the dictionary mode.
+     */
+    @Nullable
+    JsonObjectShape getShape() {
+        return shape;
+    }
+
+    /**
+     * @return the value in the slot of the current shape.
+     */
+    Object getSlotValue(int slot) {
+        return values[slot];
+    }
+
+    private void toDictionaryMode() {
+        JsonObjectShape s = Objects.requireNonNull(shape);
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>(Math.max(16, s.size() * 2));
+        for (int i = 0; i < s.size(); i++) {
+            map.put(s.keyAt(i), values[i]);
+        }
+        dictionary = map;
+        shape = null;
+        values = EMPTY_VALUES;
+    }
+
+    @Override
+    public int size() {
+        return dictionary != null ? dictionary.size() : Objects.requireNonNull(shape).size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (dictionary != null) {
+            return dictionary.containsKey(key);
+        }
+        return key instanceof String && Objects.requireNonNull(shape).slotOf((String) key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (dictionary != null) {
+            return dictionary.get(key);
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int slot = Objects.requireNonNull(shape).slotOf((String) key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (dictionary != null) {
+            return dictionary.put(key, value);
+        }
+        JsonObjectShape s = Objects.requireNonNull(shape);
+        int slot = s.slotOf(key);
+        if (slot >= 0) {
+            Object old = values[slot];
+            values[slot] = value;
+            return old;
+        }
+        JsonObjectShape next = s.withKey(key);
+        if (next == null) {
+            toDictionaryMode();
+            return Objects.requireNonNull(dictionary).put(key, value);
+        }
+        values = Arrays.copyOf(values, next.size());
+        values[next.size() - 1] = value;
+        shape = next;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (dictionary != null) {
+            return dictionary.remove(key);
+        }
+        if (!(key instanceof String)) {
+            return null;
+        }
+        JsonObjectShape s = Objects.requireNonNull(shape);
+        int slot = s.slotOf((String) key);
+        if (slot < 0) {
+            return null;
+        }
+        Object old = values[slot];
+        JsonObjectShape next = s.withoutKey((String) key);
+        if (next == null) {
+            toDictionaryMode();
+            Objects.requireNonNull(dictionary).remove(key);
+            return old;
+        }
+        Object[] nextValues = new Object[values.length - 1];
+        System.arraycopy(values, 0, nextValues, 0, slot);
+        System.arraycopy(values, slot + 1, nextValues, slot, values.length - slot - 1);
+        values = nextValues;
+        shape = next;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (dictionary != null) {
+            dictionary.clear();
+        } else {
+            shape = JsonObjectShape.root();
+            values = EMPTY_VALUES;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (dictionary != null) {
+            return dictionary.entrySet();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return ShapedJsonObjectMap.this.size();
+            }
+
+            @Nonnull
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new SlotIterator();
+            }
+        };
+    }
+
+    /**
+     * Iterates the slots of the shape when the iteration started.
+     */
+    private final class SlotIterator implements Iterator<Entry<String, Object>> {
+        private final JsonObjectShape iteratingShape = Objects.requireNonNull(shape);
+        private int next = 0;
+        private int removed = 0;
+        private @Nullable String lastKey;
+
+        @Override
+        public boolean hasNext() {
+            return next < iteratingShape.size();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (shape != iteratingShape && removed == 0) {
+                throw new ConcurrentModificationException();
+            }
+            String key = iteratingShape.keyAt(next++);
+            lastKey = key;
+            return new SlotEntry(key);
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            ShapedJsonObjectMap.this.remove(lastKey);
+            lastKey = null;
+            removed++;
+        }
+    }
+
+    private final class SlotEntry implements Entry<String, Object> {
+        private final String key;
+
+        private SlotEntry(@Nonnull String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return get(key);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return key.equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+
+/**
+ * An implementation of {@link JsonifiableDataUnit} in a compact layout, for a large amount of records with a common
+ * key set, such as rows in a cache.
+ * <p>
+ * Instead of a {@link LinkedHashMap} with one entry object per key, the wrapped {@link JsonObject} is backed by a map
+ * keeping only an {@code Object[]} of values, while the keys and their slots are kept in a {@link JsonObjectShape}
+ * shared by all the records with the same keys in the same order. Adding or removing a key moves the record to
+ * another shared shape.
+ * <p>
+ * The top-level entries given on construction or reload are copied into the compact layout; nested objects are kept
+ * as is. Use {@link JsonObjectShape#accessor(String)} for the frequent reads of one key, with the slot resolved once
+ * per shape.
+ * <p>
+ * Notice: {@link JsonObject#copy()} of {@link #toJsonObject()} would not keep the order of keys; use
+ * {@link #cloneAsJsonObject()} instead.
+ *
+ * @since 5.0.0
+ */
+public class ShapedJsonifiableDataUnitImpl implements JsonifiableDataUnit {
+    @Nonnull
+    private JsonObject jsonObject;
+
+    public ShapedJsonifiableDataUnitImpl() {
+        this.jsonObject = new JsonObject(new ShapedJsonObjectMap());
+    }
+
+    public ShapedJsonifiableDataUnitImpl(@Nonnull JsonObject jsonObject) {
+        this.jsonObject = new JsonObject(new ShapedJsonObjectMap(jsonObject.getMap()));
+    }
+
+    @Nonnull
+    @Override
+    public JsonObject toJsonObject() {
+        return jsonObject;
+    }
+
+    /**
+     * Reload with the top-level entries of the given JSON object copied into the compact layout.
+     */
+    @Override
+    public void reloadData(@Nonnull JsonObject jsonObject) {
+        this.jsonObject = new JsonObject(new ShapedJsonObjectMap(jsonObject.getMap()));
+    }
+
+    /**
+     * @return the current shape, or null if the keys are beyond the bounds of shapes.
+     */
+    @Nullable
+    public JsonObjectShape getShape() {
+        return ((ShapedJsonObjectMap) jsonObject.getMap()).getShape();
+    }
+
+    @Nullable
+    Object readByAccessor(@Nonnull JsonObjectShape.Accessor accessor) {
+        ShapedJsonObjectMap map = (ShapedJsonObjectMap) jsonObject.getMap();
+        JsonObjectShape shape = map.getShape();
+        if (shape == null) {
+            return RootJsonPointerIterator.jsonify(map.get(accessor.getKey()));
+        }
+        int slot = accessor.slotIn(shape);
+        return slot < 0 ? null : RootJsonPointerIterator.jsonify(map.getSlotValue(slot));
+    }
+
+    /**
+     * @return a deep copy of the wrapped JSON object, with the order of keys kept.
+     */
+    @Nonnull
+    @Override
+    public JsonObject cloneAsJsonObject() {
+        Object event = JsonFlightRecorder.beginClone();
+        if (!JsonMetrics.isEnabled() && event == null) {
+            return new JsonObject(new LinkedHashMap<>(jsonObject.getMap())).copy();
+        }
+        long start = System.nanoTime();
+        JsonObject clone = new JsonObject(new LinkedHashMap<>(jsonObject.getMap())).copy();
+        JsonMetrics.recordClone(this, event, start, clone);
+        return clone;
+    }
+
+    @Override
+    public String toJsonExpression() {
+        return JsonMetrics.encode(this, jsonObject);
+    }
+
+    @Override
+    public String toFormattedJsonExpression() {
+        return jsonObject.encodePrettily();
+    }
+
+    @Override
+    public String toString() {
+        return toJsonExpression();
+    }
+}
@@ -1,5 +1,7 @@
 package io.github.sinri.keel.core.json;
 
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.shareddata.Shareable;
 
@@ -36,7 +38,8 @@ public interface UnmodifiableJsonifiableEntity
      * @since 4.1.5
      */
     static <U extends UnmodifiableJsonifiableEntity> U wrap(@Nonnull JsonObject jsonObject, Class<U> clazz) throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        return clazz.getConstructor(JsonObject.class).newInstance(jsonObject);
+        // the constructor is looked up once per class, since 5.0.0
+        return JsonObjectConstructors.get(clazz).newInstance(jsonObject);
     }
 
     static UnmodifiableJsonifiableEntity wrap(@Nonnull JsonObject jsonObject) {
@@ -55,7 +58,62 @@ public interface UnmodifiableJsonifiableEntity
      */
     @Nonnull
     default JsonObject cloneAsJsonObject() {
-        return new JsonObject(toJsonExpression());
+        Object event = JsonFlightRecorder.beginClone();
+        if (!JsonMetrics.isEnabled() && event == null) {
+            return new JsonObject(toJsonExpression());
+        }
+        long start = System.nanoTime();
+        JsonObject clone = new JsonObject(toJsonExpression());
+        JsonMetrics.recordClone(this, event, start, clone);
+        return clone;
     }
 
+    /**
+     * Asynchronous {@link #toJsonExpression()} with the default {@link JsonOffloadOptions}.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<String> encodeAsync(@Nonnull Vertx vertx) {
+        return encodeAsync(vertx, JsonOffloadOptions.getDefault());
+    }
+
+    /**
+     * Asynchronous {@link #toJsonExpression()}: in place for a small entity, otherwise offloaded as the options tell,
+     * so that an event loop is not blocked by a large one.
+     * <p>
+     * The entity should not be modified before the future completed.
+     *
+     * @param vertx   the Vert.x instance to offload with
+     * @param options the options of offloading
+     * @return the future of the JSON expression, completed on the context of the caller
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<String> encodeAsync(@Nonnull Vertx vertx, @Nonnull JsonOffloadOptions options) {
+        // the root pointer reads the whole JSON object
+        boolean inline = JsonOffloading.isInlineFor(read(jsonPointer -> Object.class), options);
+        return JsonOffloading.run(vertx, inline, options, this::toJsonExpression);
+    }
+
+    /**
+     * Asynchronous {@link #cloneAsJsonObject()} with the default {@link JsonOffloadOptions}.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<JsonObject> cloneAsync(@Nonnull Vertx vertx) {
+        return cloneAsync(vertx, JsonOffloadOptions.getDefault());
+    }
+
+    /**
+     * Asynchronous {@link #cloneAsJsonObject()}, offloaded as {@link #encodeAsync(Vertx, JsonOffloadOptions)}.
+     *
+     * @since 5.0.0
+     */
+    @Nonnull
+    default Future<JsonObject> cloneAsync(@Nonnull Vertx vertx, @Nonnull JsonOffloadOptions options) {
+        boolean inline = JsonOffloading.isInlineFor(read(jsonPointer -> Object.class), options);
+        return JsonOffloading.run(vertx, inline, options, this::cloneAsJsonObject);
+    }
 }
@@ -42,7 +42,7 @@ public class UnmodifiableJsonifiableEntityImpl implements UnmodifiableJsonifiabl
 
     @Override
     public final String toJsonExpression() {
-        return jsonObject.encode();
+        return JsonMetrics.encode(this, jsonObject);
     }
 
     @Override
@@ -64,20 +64,23 @@ public class UnmodifiableJsonifiableEntityImpl implements UnmodifiableJsonifiabl
      * @since 2.7
      * @since 2.8 If java.lang.ClassCastException occurred, return null instead.
      * @since 3.1.10 make it abstract.
+     * @since 5.0.0 The type is checked instead of catching {@link ClassCastException}.
      */
     @Override
     public @Nullable <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
-        try {
-            JsonPointer jsonPointer = JsonPointer.create();
-            Class<T> tClass = func.apply(jsonPointer);
-            Object o = jsonPointer.queryJson(jsonObject);
-            if (o == null) {
-                return null;
-            }
-            return tClass.cast(o);
-        } catch (ClassCastException castException) {
-            return null;
-        }
+        JsonPointer jsonPointer = JsonPointer.create();
+        Class<T> tClass = func.apply(jsonPointer);
+        Object o = jsonPointer.queryJson(jsonObject);
+        return JsonMetrics.castRead(this, o, tClass);
+    }
+
+    /**
+     * @since 5.0.0
+     */
+    @Nullable
+    @Override
+    public Object readEntry(@Nonnull String key) {
+        return RootJsonPointerIterator.jsonify(jsonObject.getMap().get(key));
     }
 
     @Nonnull
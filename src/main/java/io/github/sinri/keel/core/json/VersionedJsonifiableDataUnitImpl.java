@@ -0,0 +1,353 @@
+package io.github.sinri.keel.core.json;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An implementation of {@link JsonifiableDataUnit} reloaded by swapping versions, for the data unit read on every
+ * request and reloaded now and then, such as a hot-reloaded configuration.
+ * <p>
+ * The data is kept as an immutable {@link Snapshot}, with a version increased by one on each swap:
+ * <ul>
+ *     <li>Reads take no lock; a reader taking {@link #snapshot()} once sees one consistent tree, however many reloads
+ *     happen meanwhile.</li>
+ *     <li>{@link #reloadData(JsonObject)} swaps in the new tree atomically; the writes ({@link #ensureEntry(String,
+ *     Object)}, {@link #removeEntry(String)} and {@link #update(Consumer)}) are done on a copy of the top-level
+ *     entries, then swapped in.</li>
+ *     <li>The reload listeners are called once per swap, on the thread which swapped.</li>
+ *     <li>The values derived from the data, such as the parsed sub-configurations, are memoized per version by
+ *     {@link #derive(String, Function)}, so that they are computed again only after a swap.</li>
+ * </ul>
+ * <p>
+ * Notice:
+ * <ul>
+ *     <li>{@link #toJsonObject()}, {@link #ensureJsonObject(String)} and {@link #ensureJsonArray(String)} return
+ *     copies, modifications on them would not be reflected to this data unit; write them back with
+ *     {@link #update(Consumer)} or {@link #ensureEntry(String, Object)}.</li>
+ *     <li>Once given to this data unit, or read from a version, such as by {@link Snapshot#toJsonObject()} or the
+ *     {@code readX} methods, a tree is shared by the readers of its version, and should not be modified, including the
+ *     nested {@link JsonObject} and {@link JsonArray} values; to change a nested value, replace it as a whole with
+ *     {@link #update(Consumer)}.</li>
+ * </ul>
+ *
+ * @since 5.0.0
+ */
+public class VersionedJsonifiableDataUnitImpl implements JsonifiableDataUnit {
+    private final AtomicReference<Snapshot> current;
+    private final List<BiConsumer<Snapshot, Snapshot>> reloadListeners = new CopyOnWriteArrayList<>();
+
+    public VersionedJsonifiableDataUnitImpl() {
+        this(new JsonObject());
+    }
+
+    public VersionedJsonifiableDataUnitImpl(@Nonnull JsonObject jsonObject) {
+        this.current = new AtomicReference<>(new Snapshot(jsonObject, 0));
+    }
+
+    /**
+     * @return the current snapshot, to read the data of one version consistently.
+     */
+    @Nonnull
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * @return the current version, 0 for the data given on construction.
+     */
+    public long getVersion() {
+        return current.get().getVersion();
+    }
+
+    /**
+     * @return a copy of the tree of the current version; use {@link #snapshot()} to read without copying.
+     */
+    @Nonnull
+    @Override
+    public JsonObject toJsonObject() {
+        return current.get().cloneAsJsonObject();
+    }
+
+    @Nonnull
+    @Override
+    public JsonObject cloneAsJsonObject() {
+        return current.get().cloneAsJsonObject();
+    }
+
+    @Nullable
+    @Override
+    public <T> T read(@Nonnull Function<JsonPointer, Class<T>> func) {
+        return current.get().read(func);
+    }
+
+    @Nullable
+    @Override
+    public Object readEntry(@Nonnull String key) {
+        return current.get().readEntry(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.get().isEmpty();
+    }
+
+    /**
+     * @return an iterator of the top-level entries of the current version, which does not support removal.
+     */
+    @Nonnull
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+        return current.get().iterator();
+    }
+
+    /**
+     * Swap in the given JSON object as a new version, which should not be modified after.
+     */
+    @Override
+    public void reloadData(@Nonnull JsonObject jsonObject) {
+        swap(previous -> jsonObject);
+    }
+
+    /**
+     * Swap in a new version with the top-level entries of the current one modified by the function; if another swap
+     * happens meanwhile, the function is called again on the top-level entries of that version.
+     *
+     * @param modifier the function to modify a copy of the top-level entries, the nested values are shared
+     * @return the snapshot swapped in
+     */
+    @Nonnull
+    public Snapshot update(@Nonnull Consumer<JsonObject> modifier) {
+        return swap(previous -> {
+            JsonObject copy = new JsonObject(new LinkedHashMap<>(previous.toJsonObject().getMap()));
+            modifier.accept(copy);
+            return copy;
+        });
+    }
+
+    @Override
+    public void ensureEntry(String key, Object value) {
+        update(jsonObject -> jsonObject.put(key, value));
+    }
+
+    @Override
+    public void removeEntry(String key) {
+        update(jsonObject -> jsonObject.remove(key));
+    }
+
+    /**
+     * Swap in a new version with an empty JSON object under the key, if the value is not a JSON object.
+     *
+     * @return a copy of the JSON object under the key; modifications on it would not be reflected to this data unit
+     */
+    @Override
+    public JsonObject ensureJsonObject(String key) {
+        Snapshot snapshot = current.get();
+        if (!(snapshot.readEntry(key) instanceof JsonObject)) {
+            snapshot = update(jsonObject -> {
+                if (!(jsonObject.getValue(key) instanceof JsonObject)) {
+                    jsonObject.put(key, new JsonObject());
+                }
+            });
+        }
+        return Objects.requireNonNull(snapshot.readJsonObject(key)).copy();
+    }
+
+    /**
+     * Swap in a new version with an empty JSON array under the key, if the value is not a JSON array.
+     *
+     * @return a copy of the JSON array under the key; modifications on it would not be reflected to this data unit
+     */
+    @Override
+    public JsonArray ensureJsonArray(String key) {
+        Snapshot snapshot = current.get();
+        if (!(snapshot.readEntry(key) instanceof JsonArray)) {
+            snapshot = update(jsonObject -> {
+                if (!(jsonObject.getValue(key) instanceof JsonArray)) {
+                    jsonObject.put(key, new JsonArray());
+                }
+            });
+        }
+        return Objects.requireNonNull(snapshot.readJsonArray(key)).copy();
+    }
+
+    @Nonnull
+    private Snapshot swap(@Nonnull Function<Snapshot, JsonObject> treeMaker) {
+        Snapshot previous;
+        Snapshot next;
+        do {
+            previous = current.get();
+            next = new Snapshot(treeMaker.apply(previous), previous.getVersion() + 1);
+        } while (!current.compareAndSet(previous, next));
+        for (BiConsumer<Snapshot, Snapshot> listener : reloadListeners) {
+            listener.accept(previous, next);
+        }
+        return next;
+    }
+
+    /**
+     * Add a listener called once per swap with the previous and the new snapshots, on the thread which swapped.
+     * <p>
+     * When swaps happen concurrently, the calls may come in another order than the versions; compare the version of
+     * the new snapshot with {@link #getVersion()} to tell whether it is still the current one. A listener should not
+     * throw, or the listeners after it are not called for the swap.
+     */
+    public VersionedJsonifiableDataUnitImpl addReloadListener(@Nonnull BiConsumer<Snapshot, Snapshot> listener) {
+        reloadListeners.add(listener);
+        return this;
+    }
+
+    public VersionedJsonifiableDataUnitImpl removeReloadListener(@Nonnull BiConsumer<Snapshot, Snapshot> listener) {
+        reloadListeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * As {@link Snapshot#derive(String, Function)} of the current snapshot.
+     */
+    @Nullable
+    public <T> T derive(@Nonnull String key, @Nonnull Function<Snapshot, T> deriver) {
+        return current.get().derive(key, deriver);
+    }
+
+    @Override
+    public void writeToBuffer(Buffer buffer) {
+        JsonMetrics.writeToBuffer(this, current.get().toJsonObject(), buffer);
+    }
+
+    @Override
+    public String toJsonExpression() {
+        return JsonMetrics.encode(this, current.get().toJsonObject());
+    }
+
+    @Override
+    public String toFormattedJsonExpression() {
+        return current.get().toFormattedJsonExpression();
+    }
+
+    @Nonnull
+    @Override
+    public Future<Buffer> writeToBufferAsync(@Nonnull Vertx vertx, @Nonnull JsonOffloadOptions options) {
+        Snapshot snapshot = current.get();
+        boolean inline = JsonOffloading.isInlineFor(snapshot.toJsonObject(), options);
+        return JsonOffloading.run(vertx, inline, options, () -> {
+            Buffer buffer = Buffer.buffer();
+            JsonMetrics.writeToBuffer(this, snapshot.toJsonObject(), buffer);
+            return buffer;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return toJsonExpression();
+    }
+
+    /**
+     * One version of the data, which is not modified once published.
+     */
+    public static final class Snapshot extends UnmodifiableJsonifiableEntityImpl {
+        /**
+         * As {@link ConcurrentHashMap} does not accept null values, a null derived value is stored as this marker.
+         */
+        private static final Object NULL_VALUE = new Object();
+
+        private final JsonObject jsonObject;
+        private final long version;
+        private final ConcurrentHashMap<String, Object> derivedValues = new ConcurrentHashMap<>();
+
+        private Snapshot(@Nonnull JsonObject jsonObject, long version) {
+            super(jsonObject);
+            this.jsonObject = jsonObject;
+            this.version = version;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the tree of this version, which should not be modified.
+         */
+        @Nonnull
+        public JsonObject toJsonObject() {
+            return jsonObject;
+        }
+
+        /**
+         * A copy of the tree of this version, by walking it as {@link JsonifiableDataUnit#cloneAsJsonObject()} does.
+         */
+        @Nonnull
+        @Override
+        public JsonObject cloneAsJsonObject() {
+            Object event = JsonFlightRecorder.beginClone();
+            long start = JsonMetrics.isEnabled() || event != null ? System.nanoTime() : 0L;
+            JsonObject clone = JsonTreeCopier.copy(jsonObject);
+            if (clone == null) {
+                clone = new JsonObject(toJsonExpression());
+            }
+            if (JsonMetrics.isEnabled() || event != null) {
+                JsonMetrics.recordClone(this, event, start, clone);
+            }
+            return clone;
+        }
+
+        /**
+         * @return an iterator of the top-level entries, which does not support removal.
+         */
+        @Nonnull
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            Iterator<Map.Entry<String, Object>> iterator = super.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    Map.Entry<String, Object> entry = iterator.next();
+                    return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+                }
+            };
+        }
+
+        /**
+         * Get the value derived from this version under the key, computed by the function on the first call and
+         * memoized for the later calls.
+         * <p>
+         * The function may derive other values from this snapshot; if called concurrently for the same key, it may
+         * run more than once, while only the first result is kept and returned to all.
+         *
+         * @param key     the key of the derived value, such as the name of a sub-configuration
+         * @param deriver the function to compute the value from this snapshot, should be pure
+         * @return the derived value, nullable
+         */
+        @Nullable
+        @SuppressWarnings("unchecked")
+        public <T> T derive(@Nonnull String key, @Nonnull Function<Snapshot, T> deriver) {
+            Object value = derivedValues.get(key);
+            if (value == null) {
+                Object derived = deriver.apply(this);
+                value = derivedValues.putIfAbsent(key, derived == null ? NULL_VALUE : derived);
+                if (value == null) {
+                    return (T) derived;
+                }
+            }
+            return value == NULL_VALUE ? null : (T) value;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package io.github.sinri.keel.utils.json;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Deep merge of layered JSON objects, such as configuration from defaults, environment, tenant and overrides, where a
+ * later layer overrides an earlier one.
+ * <p>
+ * Objects are merged by keys recursively; arrays are merged as the {@link ArrayMergeStrategy} tells; any other value
+ * of a later layer replaces the earlier one. The layers are merged at once, not in a chain of pairs.
+ * <p>
+ * The result shares the unmodified subtrees with the layers instead of copying them: a value only in one layer is
+ * taken as is, so is a layer object not overridden at all; only the objects and arrays touched by more than one layer
+ * are newly built. Thus, the layers should not be modified after being merged, unless the result is copied.
+ * <p>
+ * An instance is configured by the setters and thread-safe to use once configured.
+ *
+ * @since 5.0.0
+ */
+public class JsonMerger {
+    private static final Object REMOVAL = new Object();
+
+    private @Nonnull ArrayMergeStrategy arrayMergeStrategy = ArrayMergeStrategy.REPLACE;
+    private @Nullable String arrayMergeKey;
+    private boolean nullRemovesKey = false;
+
+    public JsonMerger() {
+    }
+
+    @Nonnull
+    public ArrayMergeStrategy getArrayMergeStrategy() {
+        return arrayMergeStrategy;
+    }
+
+    public JsonMerger setArrayMergeStrategy(@Nonnull ArrayMergeStrategy arrayMergeStrategy) {
+        this.arrayMergeStrategy = arrayMergeStrategy;
+        return this;
+    }
+
+    @Nullable
+    public String getArrayMergeKey() {
+        return arrayMergeKey;
+    }
+
+    /**
+     * @param arrayMergeKey the key of the object items to match for {@link ArrayMergeStrategy#MERGE_BY_KEY}.
+     */
+    public JsonMerger setArrayMergeKey(@Nullable String arrayMergeKey) {
+        this.arrayMergeKey = arrayMergeKey;
+        return this;
+    }
+
+    public boolean isNullRemovesKey() {
+        return nullRemovesKey;
+    }
+
+    /**
+     * @param nullRemovesKey whether the nulls are dropped from the objects built by merging, so that a null in a later
+     *                       layer removes the key, as JSON Merge Patch (RFC 7396) does; otherwise the null is kept as
+     *                       a value. The shared subtrees are kept as is.
+     */
+    public JsonMerger setNullRemovesKey(boolean nullRemovesKey) {
+        this.nullRemovesKey = nullRemovesKey;
+        return this;
+    }
+
+    /**
+     * @param layers the layers from the lowest to the highest priority
+     * @return the merged JSON object, sharing the unmodified subtrees with the layers
+     */
+    @Nonnull
+    public JsonObject merge(@Nonnull JsonObject... layers) {
+        return merge(Arrays.asList(layers));
+    }
+
+    /**
+     * @param layers the layers from the lowest to the highest priority
+     * @return the merged JSON object, sharing the unmodified subtrees with the layers
+     */
+    @Nonnull
+    public JsonObject merge(@Nonnull List<JsonObject> layers) {
+        List<Object> values = new ArrayList<>(layers.size());
+        for (JsonObject layer : layers) {
+            if (layer != null && !layer.isEmpty()) {
+                values.add(layer);
+            }
+        }
+        if (values.isEmpty()) {
+            return new JsonObject();
+        }
+        if (values.size() == 1) {
+            return (JsonObject) values.get(0);
+        }
+        return new JsonObject(mergeObjects(values));
+    }
+
+    /**
+     * Merge the values on the same path from the layers.
+     *
+     * @param values the present values from the lowest to the highest priority, as JSON values or raw {@link Map}
+     *               and {@link List}; not empty
+     * @return the merged value; if {@link #isNullRemovesKey()}, it may be a mark of removal, see
+     *         {@link #isRemoval(Object)}
+     */
+    @Nullable
+    public Object mergeValues(@Nonnull List<?> values) {
+        int last = values.size() - 1;
+        Object top = values.get(last);
+        if (isObject(top)) {
+            int from = last;
+            while (from > 0 && isObject(values.get(from - 1))) {
+                from--;
+            }
+            if (from == last) {
+                return top;
+            }
+            Map<String, Object> merged = mergeObjects(values.subList(from, last + 1));
+            return new JsonObject(merged);
+        }
+        if (isArray(top)) {
+            int from = last;
+            if (arrayMergeStrategy != ArrayMergeStrategy.REPLACE) {
+                while (from > 0 && isArray(values.get(from - 1))) {
+                    from--;
+                }
+            }
+            if (from == last) {
+                return top;
+            }
+            List<?> arrays = values.subList(from, last + 1);
+            if (arrayMergeStrategy == ArrayMergeStrategy.CONCAT) {
+                List<Object> list = new ArrayList<>();
+                for (Object array : arrays) {
+                    list.addAll(asList(array));
+                }
+                return new JsonArray(list);
+            }
+            return new JsonArray(mergeArraysByKey(arrays));
+        }
+        if (top == null && nullRemovesKey) {
+            return REMOVAL;
+        }
+        return top;
+    }
+
+    /**
+     * @return whether the merged value means to remove the key, when {@link #isNullRemovesKey()}.
+     */
+    public static boolean isRemoval(@Nullable Object mergedValue) {
+        return mergedValue == REMOVAL;
+    }
+
+    @Nonnull
+    private Map<String, Object> mergeObjects(@Nonnull List<?> objects) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, List<Object>> conflicts = null;
+        for (Object object : objects) {
+            for (Map.Entry<String, Object> entry : asMap(object).entrySet()) {
+                String key = entry.getKey();
+                if (!result.containsKey(key)) {
+                    result.put(key, entry.getValue());
+                } else {
+                    if (conflicts == null) {
+                        conflicts = new HashMap<>();
+                    }
+                    conflicts.computeIfAbsent(key, k -> {
+                        List<Object> list = new ArrayList<>(objects.size());
+                        list.add(result.get(k));
+                        return list;
+                    }).add(entry.getValue());
+                }
+            }
+        }
+        if (conflicts != null) {
+            for (Map.Entry<String, List<Object>> conflict : conflicts.entrySet()) {
+                result.put(conflict.getKey(), mergeValues(conflict.getValue()));
+            }
+        }
+        if (nullRemovesKey) {
+            Iterator<Map.Entry<String, Object>> iterator = result.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Object> entry = iterator.next();
+                Object value = entry.getValue();
+                if (value == null || value == REMOVAL) {
+                    iterator.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    private List<Object> mergeArraysByKey(@Nonnull List<?> arrays) {
+        String key = arrayMergeKey;
+        List<Object> items = new ArrayList<>();
+        List<List<Object>> versions = new ArrayList<>();
+        Map<Object, Integer> positions = new HashMap<>();
+        for (Object array : arrays) {
+            for (Object item : asList(array)) {
+                Object id = key != null && isObject(item) ? asMap(item).get(key) : null;
+                Integer position = id == null ? null : positions.get(id);
+                if (position == null) {
+                    if (id != null) {
+                        positions.put(id, items.size());
+                    }
+                    items.add(item);
+                    versions.add(null);
+                } else {
+                    List<Object> list = versions.get(position);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        list.add(items.get(position));
+                        versions.set(position, list);
+                    }
+                    list.add(item);
+                }
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            List<Object> list = versions.get(i);
+            if (list != null) {
+                items.set(i, mergeValues(list));
+            }
+        }
+        return items;
+    }
+
+    private static boolean isObject(@Nullable Object value) {
+        return value instanceof JsonObject || value instanceof Map;
+    }
+
+    private static boolean isArray(@Nullable Object value) {
+        return value instanceof JsonArray || value instanceof List;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private static Map<String, Object> asMap(@Nonnull Object value) {
+        return value instanceof JsonObject ? ((JsonObject) value).getMap() : (Map<String, Object>) value;
+    }
+
+    @Nonnull
+    private static List<?> asList(@Nonnull Object value) {
+        return value instanceof JsonArray ? ((JsonArray) value).getList() : (List<?>) value;
+    }
+
+    /**
+     * How to merge the arrays on the same path from the layers.
+     */
+    public enum ArrayMergeStrategy {
+        /**
+         * The array of the later layer replaces the earlier one.
+         */
+        REPLACE,
+        /**
+         * The arrays of the consecutive layers are concatenated in the order of the layers.
+         */
+        CONCAT,
+        /**
+         * The object items with the same value of {@link #getArrayMergeKey()} are merged in place, and the others are
+         * appended.
+         */
+        MERGE_BY_KEY
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.sinri.keel.utils.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import io.vertx.core.json.jackson.DatabindCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The limits of parsing a JSON payload, to admit an untrusted one only if it is within them, such as a frame read from
+ * the cluster or a body of a request.
+ * <p>
+ * The limits are checked while parsing, token by token, so a payload beyond them fails early with
+ * {@link JsonParseBudgetExceededException}, without building the rest:
+ * <ul>
+ *     <li>the max nesting depth of objects and arrays;</li>
+ *     <li>the max bytes of the payload, or characters if parsed from a string;</li>
+ *     <li>the max length of a string value, of a key, and of a number, in characters;</li>
+ *     <li>the max entries of one object or array;</li>
+ *     <li>the max nodes built in total, as objects, arrays and scalar values.</li>
+ * </ul>
+ * The depth, the bytes and the lengths are also enforced by the {@link StreamReadConstraints} of Jackson, when
+ * {@link JsonTreeParser} creates the parser, so that an over-long string or document is not buffered entirely.
+ * By default, the depth and the lengths are as the defaults of Jackson, so that a budget never loosens them unless
+ * told, and the others are unlimited.
+ * <p>
+ * Use it with {@link JsonParseOptions#setBudget(JsonParseBudget)}, or set it as the default with
+ * {@link #setDefault(JsonParseBudget)} to take effect on the reload paths of the data units as well. The options
+ * should not be changed once in use.
+ * <p>
+ * The violations are counted per limit, as {@link #getViolationCount(Limit)} tells.
+ *
+ * @since 5.0.0
+ */
+public class JsonParseBudget {
+    private static final Map<Limit, LongAdder> violationCounts = new EnumMap<>(Limit.class);
+    private static volatile @Nullable JsonParseBudget defaultBudget;
+
+    static {
+        for (Limit limit : Limit.values()) {
+            violationCounts.put(limit, new LongAdder());
+        }
+    }
+
+    private int maxDepth = StreamReadConstraints.DEFAULT_MAX_DEPTH;
+    private long maxBytes = Long.MAX_VALUE;
+    private int maxStringLength = StreamReadConstraints.DEFAULT_MAX_STRING_LEN;
+    private int maxNameLength = StreamReadConstraints.DEFAULT_MAX_NAME_LEN;
+    private int maxNumberLength = StreamReadConstraints.DEFAULT_MAX_NUM_LEN;
+    private int maxEntries = Integer.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    /**
+     * The factory of the parsers with the constraints of this budget, created on the first use.
+     */
+    private volatile @Nullable JsonFactory factory;
+
+    public JsonParseBudget() {
+    }
+
+    /**
+     * @return the budget applied when {@link JsonParseOptions} has none, including the reload paths of the data
+     *         units; or null if none.
+     */
+    @Nullable
+    public static JsonParseBudget getDefault() {
+        return defaultBudget;
+    }
+
+    /**
+     * @param budget the budget applied when {@link JsonParseOptions} has none, including the reload paths of the data
+     *               units; or null for none, by default.
+     */
+    public static void setDefault(@Nullable JsonParseBudget budget) {
+        defaultBudget = budget;
+    }
+
+    /**
+     * @return the count of the payloads failed on the limit, since started or reset.
+     */
+    public static long getViolationCount(@Nonnull Limit limit) {
+        return violationCounts.get(limit).sum();
+    }
+
+    public static void resetViolationCounts() {
+        violationCounts.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Count the violation, and create the exception to throw.
+     */
+    @Nonnull
+    static JsonParseBudgetExceededException exceeded(@Nonnull Limit limit, long max, @Nonnull String message) {
+        violationCounts.get(limit).increment();
+        return new JsonParseBudgetExceededException(limit, max, message);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public JsonParseBudget setMaxDepth(int maxDepth) {
+        this.maxDepth = requirePositive(maxDepth, "maxDepth");
+        this.factory = null;
+        return this;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param maxBytes the max bytes of a payload, or characters if parsed from a string; for a compressed frame, it
+     *                 limits the bytes inflated as well.
+     */
+    public JsonParseBudget setMaxBytes(long maxBytes) {
+        this.maxBytes = requirePositive(maxBytes, "maxBytes");
+        this.factory = null;
+        return this;
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    public JsonParseBudget setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = requirePositive(maxStringLength, "maxStringLength");
+        this.factory = null;
+        return this;
+    }
+
+    public int getMaxNameLength() {
+        return maxNameLength;
+    }
+
+    /**
+     * @param maxNameLength the max length of a key of an object.
+     */
+    public JsonParseBudget setMaxNameLength(int maxNameLength) {
+        this.maxNameLength = requirePositive(maxNameLength, "maxNameLength");
+        this.factory = null;
+        return this;
+    }
+
+    public int getMaxNumberLength() {
+        return maxNumberLength;
+    }
+
+    public JsonParseBudget setMaxNumberLength(int maxNumberLength) {
+        this.maxNumberLength = requirePositive(maxNumberLength, "maxNumberLength");
+        this.factory = null;
+        return this;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * @param maxEntries the max entries of one object, or items of one array.
+     */
+    public JsonParseBudget setMaxEntries(int maxEntries) {
+        this.maxEntries = requirePositive(maxEntries, "maxEntries");
+        return this;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @param maxNodes the max nodes built in total, counting each object, array and scalar value; the subtrees
+     *                 skipped by {@link JsonProjection} are not counted.
+     */
+    public JsonParseBudget setMaxNodes(long maxNodes) {
+        this.maxNodes = requirePositive(maxNodes, "maxNodes");
+        return this;
+    }
+
+    private static int requirePositive(int value, @Nonnull String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " should be positive");
+        }
+        return value;
+    }
+
+    private static long requirePositive(long value, @Nonnull String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " should be positive");
+        }
+        return value;
+    }
+
+    /**
+     * Admit a payload of the size before parsing it, such as a buffer or a compressed frame to inflate.
+     *
+     * @param bytes the bytes of the payload, or characters if it is a string
+     * @throws JsonParseBudgetExceededException if the size is beyond the max bytes
+     */
+    public void checkBytes(long bytes) {
+        if (bytes > maxBytes) {
+            throw exceeded(Limit.BYTES, maxBytes, "Payload length (" + bytes + ") exceeds the maximum allowed (" + maxBytes + ")");
+        }
+    }
+
+    /**
+     * @return the factory of Vert.x, with the constraints of this budget.
+     */
+    @Nonnull
+    JsonFactory getFactory() {
+        JsonFactory f = factory;
+        if (f == null) {
+            f = DatabindCodec.mapper().getFactory().copy();
+            f.setStreamReadConstraints(
+                    StreamReadConstraints.builder()
+                                         .maxNestingDepth(maxDepth)
+                                         .maxDocumentLength(maxBytes == Long.MAX_VALUE ? -1 : maxBytes)
+                                         .maxStringLength(maxStringLength)
+                                         .maxNameLength(maxNameLength)
+                                         .maxNumberLength(maxNumberLength)
+                                         .build()
+            );
+            factory = f;
+        }
+        return f;
+    }
+
+    /**
+     * The limits of a budget.
+     */
+    public enum Limit {
+        DEPTH, BYTES, STRING_LENGTH, NAME_LENGTH, NUMBER_LENGTH, ENTRIES, NODES
+    }
+}
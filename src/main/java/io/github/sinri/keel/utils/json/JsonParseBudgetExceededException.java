@@ -0,0 +1,38 @@
+package io.github.sinri.keel.utils.json;
+
+import io.vertx.core.json.DecodeException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Thrown when a JSON payload is beyond a limit of {@link JsonParseBudget}, as soon as found while parsing.
+ *
+ * @since 5.0.0
+ */
+public class JsonParseBudgetExceededException extends DecodeException {
+    private static final long serialVersionUID = 1L;
+
+    private final JsonParseBudget.Limit limit;
+    private final long max;
+
+    public JsonParseBudgetExceededException(@Nonnull JsonParseBudget.Limit limit, long max, @Nonnull String message) {
+        super(message);
+        this.limit = limit;
+        this.max = max;
+    }
+
+    /**
+     * @return the limit exceeded.
+     */
+    @Nonnull
+    public JsonParseBudget.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the max value of the limit in the budget.
+     */
+    public long getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.sinri.keel.utils.json;
+
+import javax.annotation.Nullable;
+
+/**
+ * Options for {@link JsonTreeParser}, to parse JSON in a specific mode instead of the common one of Vert.x.
+ *
+ * @since 5.0.0
+ */
+public class JsonParseOptions {
+    private @Nullable JsonStringInterner keyInterner;
+    private @Nullable JsonStringInterner valueInterner;
+    private @Nullable JsonProjection projection;
+    private @Nullable JsonParseBudget budget;
+
+    public JsonParseOptions() {
+    }
+
+    /**
+     * @return options to intern keys and short string values with the given interner.
+     */
+    public static JsonParseOptions interning(@Nullable JsonStringInterner interner) {
+        return new JsonParseOptions()
+                .setKeyInterner(interner)
+                .setValueInterner(interner);
+    }
+
+    @Nullable
+    public JsonStringInterner getKeyInterner() {
+        return keyInterner;
+    }
+
+    /**
+     * @param keyInterner the interner to dedupe the keys of objects, or null not to intern them.
+     */
+    public JsonParseOptions setKeyInterner(@Nullable JsonStringInterner keyInterner) {
+        this.keyInterner = keyInterner;
+        return this;
+    }
+
+    @Nullable
+    public JsonStringInterner getValueInterner() {
+        return valueInterner;
+    }
+
+    /**
+     * @param valueInterner the interner to dedupe the string values not longer than its max length, or null not to
+     *                      intern them.
+     */
+    public JsonParseOptions setValueInterner(@Nullable JsonStringInterner valueInterner) {
+        this.valueInterner = valueInterner;
+        return this;
+    }
+
+    @Nullable
+    public JsonProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @param projection the paths to keep, with the other subtrees skipped without building; or null to keep all.
+     */
+    public JsonParseOptions setProjection(@Nullable JsonProjection projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    @Nullable
+    public JsonParseBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the budget to parse within: the one of the options, or {@link JsonParseBudget#getDefault()} if none.
+     */
+    @Nullable
+    public JsonParseBudget getEffectiveBudget() {
+        return budget != null ? budget : JsonParseBudget.getDefault();
+    }
+
+    /**
+     * @param budget the limits to parse within, or null to apply {@link JsonParseBudget#getDefault()} if any.
+     */
+    public JsonParseOptions setBudget(@Nullable JsonParseBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+}
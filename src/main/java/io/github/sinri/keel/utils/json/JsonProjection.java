@@ -0,0 +1,184 @@
+package io.github.sinri.keel.utils.json;
+
+import io.vertx.core.json.pointer.JsonPointer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * A set of paths to keep when parsing, compiled into a trie, so that {@link JsonTreeParser} skips every other subtree
+ * on the token level without building values for it; set it with {@link JsonParseOptions#setProjection(JsonProjection)}.
+ * <p>
+ * A path keeps the whole value on it, and the objects and arrays on the way to it with only the matched entries.
+ * <p>
+ * A step {@code *} matches any member of an object or any item of an array, including those matched by another step
+ * of the same node, where the union of both is kept. On an array, a numeric step matches the item at the index; if no
+ * step of the node is numeric or {@code *}, the array is transparent, that is, the node applies to every item, so
+ * {@code /items/sku} keeps the {@code sku} of every item in {@code items}. Unmatched items of an array are dropped, so
+ * the kept items may not be at their original indexes.
+ *
+ * @since 5.0.0
+ */
+public final class JsonProjection {
+    private static final String WILDCARD = "*";
+
+    private final Node root;
+
+    private JsonProjection(@Nonnull Node root) {
+        this.root = root;
+        root.freeze();
+    }
+
+    /**
+     * @param jsonPointers the paths to keep, as JSON Pointers such as {@code /order/items/0/sku}; the root pointer
+     *                     keeps everything
+     * @throws IllegalArgumentException if a pointer is not valid
+     */
+    @Nonnull
+    public static JsonProjection ofPointers(@Nonnull Collection<String> jsonPointers) {
+        Node root = new Node();
+        for (String pointer : jsonPointers) {
+            JsonPointer jsonPointer = JsonPointer.from(pointer);
+            root.add(jsonPointer.isRootPointer() ? List.of() : decodePointer(pointer));
+        }
+        return new JsonProjection(root);
+    }
+
+    @Nonnull
+    public static JsonProjection ofPointers(@Nonnull String... jsonPointers) {
+        return ofPointers(Arrays.asList(jsonPointers));
+    }
+
+    /**
+     * @param fieldMask the paths to keep as a field mask, such as {@code order.id,order.items.sku}: paths separated by
+     *                  commas, with steps separated by dots
+     */
+    @Nonnull
+    public static JsonProjection ofFieldMask(@Nonnull String fieldMask) {
+        Node root = new Node();
+        for (String path : fieldMask.split(",")) {
+            String trimmed = path.trim();
+            if (!trimmed.isEmpty()) {
+                root.add(Arrays.asList(trimmed.split("\\.")));
+            }
+        }
+        return new JsonProjection(root);
+    }
+
+    @Nonnull
+    private static List<String> decodePointer(@Nonnull String pointer) {
+        List<String> steps = new ArrayList<>();
+        // JsonPointer.from has validated the pointer, which starts with a slash
+        for (String raw : pointer.substring(1).split("/", -1)) {
+            steps.add(raw.replace("~1", "/").replace("~0", "~"));
+        }
+        return steps;
+    }
+
+    /**
+     * @return the node of the root, for the parser.
+     */
+    @Nonnull
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * A node in the trie: a leaf keeps the whole value; otherwise only the matched children are kept.
+     */
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean leaf;
+        private @Nullable Node wildcard;
+        private boolean hasArraySteps;
+
+        private void add(@Nonnull List<String> steps) {
+            Node node = this;
+            for (String step : steps) {
+                if (node.leaf) {
+                    return;
+                }
+                node = node.children.computeIfAbsent(step, k -> new Node());
+            }
+            node.leaf = true;
+            node.children.clear();
+        }
+
+        private void freeze() {
+            wildcard = children.get(WILDCARD);
+            if (wildcard != null) {
+                // a member or item matched by a literal step is matched by the wildcard as well
+                for (Map.Entry<String, Node> entry : children.entrySet()) {
+                    if (!entry.getKey().equals(WILDCARD)) {
+                        entry.getValue().merge(wildcard);
+                    }
+                }
+            }
+            for (String step : children.keySet()) {
+                if (step.equals(WILDCARD) || isIndex(step)) {
+                    hasArraySteps = true;
+                    break;
+                }
+            }
+            for (Node child : children.values()) {
+                child.freeze();
+            }
+        }
+
+        /**
+         * Keep what the other node keeps as well, copying its subtree; a leaf on either side makes this a leaf.
+         */
+        private void merge(@Nonnull Node other) {
+            if (leaf) {
+                return;
+            }
+            if (other.leaf) {
+                leaf = true;
+                children.clear();
+                return;
+            }
+            for (Map.Entry<String, Node> entry : other.children.entrySet()) {
+                children.computeIfAbsent(entry.getKey(), k -> new Node()).merge(entry.getValue());
+            }
+        }
+
+        private static boolean isIndex(@Nonnull String step) {
+            if (step.isEmpty() || step.length() > 9) {
+                return false;
+            }
+            for (int i = 0; i < step.length(); i++) {
+                char c = step.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isLeaf() {
+            return leaf;
+        }
+
+        /**
+         * @return the node for the member of an object, or null to skip it.
+         */
+        @Nullable
+        Node member(@Nonnull String key) {
+            Node child = children.get(key);
+            return child != null ? child : wildcard;
+        }
+
+        /**
+         * @return the node for the item of an array, or null to skip it.
+         */
+        @Nullable
+        Node item(int index) {
+            if (!hasArraySteps) {
+                return this;
+            }
+            Node child = children.get(Integer.toString(index));
+            return child != null ? child : wildcard;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.sinri.keel.utils.json;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Estimates the size of the JSON expression of a value without encoding it, to decide whether encoding it is heavy.
+ * <p>
+ * The estimate counts one byte per character of strings and keys, and a fixed width for numbers; it stops walking
+ * once the limit is exceeded, so the cost is bounded by the limit instead of the size of the value.
+ * <p>
+ * A value of other types, such as an entity wrapping a JSON object, is counted as a fixed width, unless an expander
+ * given turns it into the JSON object or array to walk.
+ *
+ * @since 5.0.0
+ */
+public final class JsonSizeEstimator {
+    private static final int NUMBER_WIDTH = 8;
+    private static final int UNKNOWN_WIDTH = 16;
+
+    private JsonSizeEstimator() {
+    }
+
+    /**
+     * @param value the value to estimate, such as a {@link JsonObject}
+     * @param limit the size beyond which walking stops
+     * @return the estimated size in bytes; a result greater than the limit means only "greater than the limit".
+     */
+    public static long estimate(@Nullable Object value, long limit) {
+        return estimate(value, limit, null);
+    }
+
+    /**
+     * @param value    the value to estimate, such as a {@link JsonObject}
+     * @param limit    the size beyond which walking stops
+     * @param expander the function to turn a value of other types into a {@link JsonObject}, {@link JsonArray},
+     *                 {@link Map} or {@link List} to walk, or null if it could not; or null for no expansion
+     * @return the estimated size in bytes; a result greater than the limit means only "greater than the limit".
+     */
+    public static long estimate(@Nullable Object value, long limit, @Nullable Function<Object, Object> expander) {
+        long size = 0;
+        ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+        Object current = value;
+        while (true) {
+            if (current instanceof JsonObject) {
+                current = ((JsonObject) current).getMap();
+            } else if (current instanceof JsonArray) {
+                current = ((JsonArray) current).getList();
+            }
+            if (current instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) current;
+                size += 2 + map.size();
+                stack.push(map.entrySet().iterator());
+            } else if (current instanceof List) {
+                List<?> list = (List<?>) current;
+                size += 2 + list.size();
+                stack.push(list.iterator());
+            } else {
+                if (expander != null && !isScalar(current)) {
+                    Object expanded = expander.apply(current);
+                    if (isContainer(expanded)) {
+                        current = expanded;
+                        continue;
+                    }
+                }
+                size += scalarSize(current);
+            }
+            if (size > limit) {
+                return size;
+            }
+
+            current = null;
+            boolean found = false;
+            while (!stack.isEmpty()) {
+                Iterator<?> iterator = stack.peek();
+                if (iterator.hasNext()) {
+                    Object next = iterator.next();
+                    if (next instanceof Map.Entry) {
+                        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) next;
+                        size += String.valueOf(entry.getKey()).length() + 3;
+                        next = entry.getValue();
+                    }
+                    current = next;
+                    found = true;
+                    break;
+                }
+                stack.pop();
+            }
+            if (!found) {
+                return size;
+            }
+        }
+    }
+
+    private static boolean isScalar(@Nullable Object value) {
+        return value == null
+                || value instanceof CharSequence
+                || value instanceof Number
+                || value instanceof Boolean
+                || value instanceof Buffer
+                || value instanceof byte[];
+    }
+
+    private static boolean isContainer(@Nullable Object value) {
+        return value instanceof JsonObject
+                || value instanceof JsonArray
+                || value instanceof Map
+                || value instanceof List;
+    }
+
+    private static long scalarSize(@Nullable Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() + 2;
+        } else if (value instanceof Number) {
+            return NUMBER_WIDTH;
+        } else if (value instanceof Boolean) {
+            return 5;
+        } else if (value instanceof Buffer) {
+            // as Base64
+            return ((Buffer) value).length() * 4L / 3 + 4;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length * 4L / 3 + 4;
+        }
+        return UNKNOWN_WIDTH;
+    }
+}
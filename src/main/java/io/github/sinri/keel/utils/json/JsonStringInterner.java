@@ -0,0 +1,133 @@
+package io.github.sinri.keel.utils.json;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lossy and thread-safe table to dedupe the strings parsed from JSON, such as the keys and the enum-like
+ * values repeated in every record of a large result set.
+ * <p>
+ * The table is direct-mapped: each string goes into the slot of its hash, replacing the previous one on collision, so
+ * its memory is fixed and no lock is taken. A string longer than the max length is never interned.
+ * <p>
+ * Use it with {@link JsonParseOptions#setKeyInterner(JsonStringInterner)} and
+ * {@link JsonParseOptions#setValueInterner(JsonStringInterner)}.
+ *
+ * @since 5.0.0
+ */
+public final class JsonStringInterner {
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int maxStringLength;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param capacity        the count of slots, rounded up to a power of two
+     * @param maxStringLength the max length of the strings to intern
+     */
+    public JsonStringInterner(int capacity, int maxStringLength) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity should be in (0, 2^30]");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxStringLength = maxStringLength;
+    }
+
+    public JsonStringInterner() {
+        this(4096, 64);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * @return the interned instance equal to the given string, or the given one if it is not interned.
+     */
+    @Nonnull
+    public String intern(@Nonnull String s) {
+        if (s.length() > maxStringLength) {
+            return s;
+        }
+        int i = spread(s.hashCode()) & mask;
+        String cached = table.get(i);
+        if (cached != null && cached.equals(s)) {
+            hitCount.increment();
+            return cached;
+        }
+        table.set(i, s);
+        missCount.increment();
+        return s;
+    }
+
+    /**
+     * Intern the string in the range of the given characters, with no new string created when it is interned already.
+     *
+     * @return the interned instance equal to the characters, or a new string if it is not interned.
+     */
+    @Nonnull
+    public String intern(@Nonnull char[] chars, int offset, int length) {
+        if (length > maxStringLength) {
+            return new String(chars, offset, length);
+        }
+        int h = 0;
+        for (int k = 0; k < length; k++) {
+            h = 31 * h + chars[offset + k];
+        }
+        int i = spread(h) & mask;
+        String cached = table.get(i);
+        if (cached != null && cached.length() == length && matches(cached, chars, offset)) {
+            hitCount.increment();
+            return cached;
+        }
+        String s = new String(chars, offset, length);
+        table.set(i, s);
+        missCount.increment();
+        return s;
+    }
+
+    private static boolean matches(@Nonnull String s, @Nonnull char[] chars, int offset) {
+        for (int k = 0; k < s.length(); k++) {
+            if (s.charAt(k) != chars[offset + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the ratio of hits to lookups of the strings not longer than the max length, or 0 if none.
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Reset the hit and miss counts; the interned strings are kept.
+     */
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+    }
+}
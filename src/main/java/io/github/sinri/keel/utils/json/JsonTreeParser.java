@@ -0,0 +1,475 @@
+package io.github.sinri.keel.utils.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonTokenId;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.internal.buffer.BufferInternal;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.core.json.jackson.JacksonCodec;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse JSON into {@link JsonObject} and {@link JsonArray} on the token stream of Jackson, as Vert.x does, with the
+ * modes in {@link JsonParseOptions} applied during parsing.
+ * <p>
+ * The result is the same as {@code new JsonObject(...)} and {@code new JsonArray(...)}: nested objects and arrays are
+ * kept as {@link Map} and {@link List}, wrapped when read.
+ *
+ * @since 5.0.0
+ */
+public final class JsonTreeParser {
+    /**
+     * The options of the common mode, with {@link JsonParseBudget#getDefault()} applied.
+     */
+    private static final JsonParseOptions DEFAULT_OPTIONS = new JsonParseOptions();
+
+    private JsonTreeParser() {
+    }
+
+    /**
+     * Parse as {@code new JsonObject(buffer)} does, within {@link JsonParseBudget#getDefault()} if set, such as on the
+     * reload paths of the data units.
+     *
+     * @throws DecodeException if failed to parse, or {@link JsonParseBudgetExceededException} if beyond the budget
+     */
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull Buffer buffer) {
+        if (JsonParseBudget.getDefault() == null) {
+            return new JsonObject(buffer);
+        }
+        return parseJsonObject(buffer, DEFAULT_OPTIONS);
+    }
+
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        return parse(buffer, options, JsonObject.class);
+    }
+
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options) {
+        return parse(jsonExpression, options, JsonObject.class);
+    }
+
+    /**
+     * Parse the JSON object read from the stream, such as a region of a mapped file, without collecting the bytes
+     * first; the stream is closed after parsing.
+     *
+     * @throws DecodeException if failed to parse
+     */
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull InputStream inputStream, @Nonnull JsonParseOptions options) {
+        JsonParseBudget budget = options.getEffectiveBudget();
+        JsonParser parser;
+        try {
+            JsonFactory factory = budget == null ? DatabindCodec.mapper().getFactory() : budget.getFactory();
+            parser = factory.createParser(inputStream);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+        return parse(parser, options, budget, JsonObject.class);
+    }
+
+    @Nonnull
+    public static JsonArray parseJsonArray(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        return parse(buffer, options, JsonArray.class);
+    }
+
+    @Nonnull
+    public static JsonArray parseJsonArray(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options) {
+        return parse(jsonExpression, options, JsonArray.class);
+    }
+
+    /**
+     * @return the parsed value, as {@link JsonObject}, {@link JsonArray}, {@link String}, {@link Number},
+     *         {@link Boolean} or null.
+     */
+    @Nullable
+    public static Object parseValue(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        return parse(buffer, options, Object.class);
+    }
+
+    /**
+     * Parse the value starting at the current token of the parser, leaving the parser at the last token of the value,
+     * for reading a part of a token stream.
+     * <p>
+     * As the parser is given, the limits of the budget in the options are checked on the tokens read, except the max
+     * bytes.
+     *
+     * @return the parsed value, as {@link JsonObject}, {@link JsonArray}, {@link String}, {@link Number},
+     *         {@link Boolean} or null.
+     * @throws DecodeException if failed to parse
+     */
+    @Nullable
+    public static Object readValue(@Nonnull JsonParser parser, @Nonnull JsonParseOptions options) {
+        try {
+            return cast(new Session(parser, options, options.getEffectiveBudget()).parseAny(), Object.class);
+        } catch (StreamConstraintsException e) {
+            throw translate(e, options.getEffectiveBudget());
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the value in the buffer on the token stream, such as to skip the parts not wanted, with the parser created
+     * and the budget in the options applied as the parse methods do; the parser is given at the first token, and the
+     * tokens after the value are rejected once the reader returns.
+     * <p>
+     * As the reader walks the tokens itself, the max entries and nodes of the budget are checked only on the values
+     * read by {@link #readValue(JsonParser, JsonParseOptions)}.
+     *
+     * @param reader to read the value starting at the current token, leaving the parser at the last token of it
+     * @throws DecodeException if failed to parse, or {@link JsonParseBudgetExceededException} if beyond the budget
+     */
+    public static void readTokens(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options, @Nonnull TokenReader reader) {
+        JsonParseBudget budget = options.getEffectiveBudget();
+        try (JsonParser parser = createParser(buffer, budget)) {
+            if (parser.nextToken() == null) {
+                throw new DecodeException("No content");
+            }
+            reader.read(parser);
+            if (parser.nextToken() != null) {
+                throw new DecodeException("Unexpected trailing token");
+            }
+        } catch (StreamConstraintsException e) {
+            throw translate(e, budget);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+    }
+
+    @Nonnull
+    private static <T> T parse(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options, @Nonnull Class<T> type) {
+        JsonParseBudget budget = options.getEffectiveBudget();
+        JsonParser parser;
+        try {
+            parser = createParser(buffer, budget);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+        return parse(parser, options, budget, type);
+    }
+
+    /**
+     * @return the parser of Vert.x, or the one with the constraints of the budget once the bytes are admitted.
+     */
+    @Nonnull
+    private static JsonParser createParser(@Nonnull Buffer buffer, @Nullable JsonParseBudget budget) throws IOException {
+        if (budget == null) {
+            return JacksonCodec.createParser(buffer);
+        }
+        budget.checkBytes(buffer.length());
+        return budget.getFactory().createParser(
+                (InputStream) new ByteBufInputStream(((BufferInternal) buffer).getByteBuf())
+        );
+    }
+
+    @Nonnull
+    private static <T> T parse(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options, @Nonnull Class<T> type) {
+        JsonParseBudget budget = options.getEffectiveBudget();
+        if (budget == null) {
+            return parse(JacksonCodec.createParser(jsonExpression), options, null, type);
+        }
+        budget.checkBytes(jsonExpression.length());
+        JsonParser parser;
+        try {
+            parser = budget.getFactory().createParser(jsonExpression);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+        return parse(parser, options, budget, type);
+    }
+
+    @Nonnull
+    private static <T> T parse(
+            @Nonnull JsonParser parser,
+            @Nonnull JsonParseOptions options,
+            @Nullable JsonParseBudget budget,
+            @Nonnull Class<T> type
+    ) {
+        Object value;
+        try (parser) {
+            parser.nextToken();
+            value = new Session(parser, options, budget).parseAny();
+            if (parser.nextToken() != null) {
+                throw new DecodeException("Unexpected trailing token");
+            }
+        } catch (StreamConstraintsException e) {
+            throw translate(e, budget);
+        } catch (IOException e) {
+            throw new DecodeException(e.getMessage(), e);
+        }
+        return cast(value, type);
+    }
+
+    /**
+     * @return the exception of the budget for the constraint of Jackson violated, told by the getter of the
+     *         constraint named in the message; or a common one if no budget is applied.
+     */
+    @Nonnull
+    private static DecodeException translate(@Nonnull StreamConstraintsException e, @Nullable JsonParseBudget budget) {
+        String message = e.getOriginalMessage();
+        JsonParseBudgetExceededException exceeded;
+        if (budget == null) {
+            return new DecodeException(e.getMessage(), e);
+        } else if (message.contains("getMaxNestingDepth")) {
+            exceeded = JsonParseBudget.exceeded(JsonParseBudget.Limit.DEPTH, budget.getMaxDepth(), message);
+        } else if (message.contains("getMaxDocumentLength")) {
+            exceeded = JsonParseBudget.exceeded(JsonParseBudget.Limit.BYTES, budget.getMaxBytes(), message);
+        } else if (message.contains("getMaxStringLength")) {
+            exceeded = JsonParseBudget.exceeded(JsonParseBudget.Limit.STRING_LENGTH, budget.getMaxStringLength(), message);
+        } else if (message.contains("getMaxNameLength")) {
+            exceeded = JsonParseBudget.exceeded(JsonParseBudget.Limit.NAME_LENGTH, budget.getMaxNameLength(), message);
+        } else if (message.contains("getMaxNumberLength")) {
+            exceeded = JsonParseBudget.exceeded(JsonParseBudget.Limit.NUMBER_LENGTH, budget.getMaxNumberLength(), message);
+        } else {
+            return new DecodeException(e.getMessage(), e);
+        }
+        exceeded.initCause(e);
+        return exceeded;
+    }
+
+    private static <T> T cast(@Nullable Object value, @Nonnull Class<T> type) {
+        if (value instanceof Map) {
+            if (type != JsonObject.class && type != Object.class) {
+                throw new DecodeException("Failed to decode");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) value;
+            return type.cast(new JsonObject(map));
+        } else if (value instanceof List) {
+            if (type != JsonArray.class && type != Object.class) {
+                throw new DecodeException("Failed to decode");
+            }
+            return type.cast(new JsonArray((List<?>) value));
+        } else if (type != Object.class) {
+            throw new DecodeException("Failed to decode");
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * A reader of the token stream, for {@link #readTokens(Buffer, JsonParseOptions, TokenReader)}.
+     */
+    @FunctionalInterface
+    public interface TokenReader {
+        void read(@Nonnull JsonParser parser) throws IOException;
+    }
+
+    /**
+     * The state of one parsing.
+     */
+    private static final class Session {
+        private final JsonParser parser;
+        private final @Nullable JsonStringInterner keyInterner;
+        private final @Nullable JsonStringInterner valueInterner;
+        private final @Nullable JsonProjection.Node projectionRoot;
+        private final @Nullable JsonParseBudget budget;
+        private int depth = 0;
+        private long nodes = 0;
+
+        private Session(@Nonnull JsonParser parser, @Nonnull JsonParseOptions options, @Nullable JsonParseBudget budget) {
+            this.parser = parser;
+            this.budget = budget;
+            this.keyInterner = options.getKeyInterner();
+            this.valueInterner = options.getValueInterner();
+            JsonProjection projection = options.getProjection();
+            this.projectionRoot = projection == null || projection.getRoot().isLeaf() ? null : projection.getRoot();
+        }
+
+        @Nullable
+        private Object parseAny() throws IOException {
+            return parseAny(projectionRoot);
+        }
+
+        /**
+         * Parse the value starting at the current token.
+         *
+         * @param projection the node of projection to apply, or null to keep the whole value
+         */
+        @Nullable
+        private Object parseAny(@Nullable JsonProjection.Node projection) throws IOException {
+            if (budget != null) {
+                checkBudget();
+            }
+            switch (parser.currentTokenId()) {
+                case JsonTokenId.ID_START_OBJECT:
+                    return parseObject(projection);
+                case JsonTokenId.ID_START_ARRAY:
+                    return parseArray(projection);
+                case JsonTokenId.ID_STRING:
+                    return parseString();
+                case JsonTokenId.ID_NUMBER_INT:
+                case JsonTokenId.ID_NUMBER_FLOAT:
+                    return parser.getNumberValue();
+                case JsonTokenId.ID_TRUE:
+                    return Boolean.TRUE;
+                case JsonTokenId.ID_FALSE:
+                    return Boolean.FALSE;
+                case JsonTokenId.ID_NULL:
+                    return null;
+                default:
+                    throw new DecodeException("Unexpected token");
+            }
+        }
+
+        /**
+         * Check the value at the current token against the budget, before building it; the lengths are checked as
+         * well, in case the parser is given without the constraints of the budget.
+         */
+        private void checkBudget() throws IOException {
+            if (++nodes > budget.getMaxNodes()) {
+                throw JsonParseBudget.exceeded(
+                        JsonParseBudget.Limit.NODES, budget.getMaxNodes(),
+                        "Node count exceeds the maximum allowed (" + budget.getMaxNodes() + ")"
+                );
+            }
+            switch (parser.currentTokenId()) {
+                case JsonTokenId.ID_START_OBJECT:
+                case JsonTokenId.ID_START_ARRAY:
+                    if (depth + 1 > budget.getMaxDepth()) {
+                        throw JsonParseBudget.exceeded(
+                                JsonParseBudget.Limit.DEPTH, budget.getMaxDepth(),
+                                "Nesting depth exceeds the maximum allowed (" + budget.getMaxDepth() + ")"
+                        );
+                    }
+                    break;
+                case JsonTokenId.ID_STRING:
+                    if (parser.getTextLength() > budget.getMaxStringLength()) {
+                        throw JsonParseBudget.exceeded(
+                                JsonParseBudget.Limit.STRING_LENGTH, budget.getMaxStringLength(),
+                                "String value length (" + parser.getTextLength() + ") exceeds the maximum allowed ("
+                                        + budget.getMaxStringLength() + ")"
+                        );
+                    }
+                    break;
+                case JsonTokenId.ID_NUMBER_INT:
+                case JsonTokenId.ID_NUMBER_FLOAT:
+                    if (parser.getTextLength() > budget.getMaxNumberLength()) {
+                        throw JsonParseBudget.exceeded(
+                                JsonParseBudget.Limit.NUMBER_LENGTH, budget.getMaxNumberLength(),
+                                "Number value length (" + parser.getTextLength() + ") exceeds the maximum allowed ("
+                                        + budget.getMaxNumberLength() + ")"
+                        );
+                    }
+                    break;
+            }
+        }
+
+        private void checkEntries(int entries) {
+            if (entries > budget.getMaxEntries()) {
+                throw JsonParseBudget.exceeded(
+                        JsonParseBudget.Limit.ENTRIES, budget.getMaxEntries(),
+                        "Entry count exceeds the maximum allowed (" + budget.getMaxEntries() + ")"
+                );
+            }
+        }
+
+        private void checkKey(@Nonnull String key) {
+            if (key.length() > budget.getMaxNameLength()) {
+                throw JsonParseBudget.exceeded(
+                        JsonParseBudget.Limit.NAME_LENGTH, budget.getMaxNameLength(),
+                        "Name length (" + key.length() + ") exceeds the maximum allowed ("
+                                + budget.getMaxNameLength() + ")"
+                );
+            }
+        }
+
+        @Nonnull
+        private String parseString() throws IOException {
+            if (valueInterner != null && parser.getTextLength() <= valueInterner.getMaxStringLength()) {
+                return valueInterner.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+            return parser.getText();
+        }
+
+        @Nonnull
+        private Map<String, Object> parseObject(@Nullable JsonProjection.Node projection) throws IOException {
+            Map<String, Object> map = new LinkedHashMap<>();
+            depth++;
+            int entries = 0;
+            String key;
+            while ((key = parser.nextFieldName()) != null) {
+                if (budget != null) {
+                    checkEntries(++entries);
+                    checkKey(key);
+                }
+                parser.nextToken();
+                JsonProjection.Node child = null;
+                if (projection != null) {
+                    child = projection.member(key);
+                    if (!isKept(child)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (child.isLeaf()) {
+                        child = null;
+                    }
+                }
+                if (keyInterner != null) {
+                    key = keyInterner.intern(key);
+                }
+                map.put(key, parseAny(child));
+            }
+            depth--;
+            return map;
+        }
+
+        @Nonnull
+        private List<Object> parseArray(@Nullable JsonProjection.Node projection) throws IOException {
+            List<Object> list = new ArrayList<>();
+            depth++;
+            int items = 0;
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (budget != null) {
+                    checkEntries(++items);
+                }
+                JsonProjection.Node child = null;
+                if (projection != null) {
+                    child = projection.item(index++);
+                    if (!isKept(child)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (child.isLeaf()) {
+                        child = null;
+                    }
+                }
+                list.add(parseAny(child));
+            }
+            depth--;
+            return list;
+        }
+
+        /**
+         * @return whether to keep the value at the current token with the node of projection: a leaf keeps all, and
+         *         an inner node keeps only an object or an array to project into.
+         */
+        private boolean isKept(@Nullable JsonProjection.Node node) {
+            if (node == null) {
+                return false;
+            }
+            if (node.isLeaf()) {
+                return true;
+            }
+            int tokenId = parser.currentTokenId();
+            return tokenId == JsonTokenId.ID_START_OBJECT || tokenId == JsonTokenId.ID_START_ARRAY;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package io.github.sinri.keel.utils.json;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -65,6 +68,63 @@ public class JsonUtils {
         return getSortedJsonObject(object).toString();
     }
 
+    /**
+     * Parse the JSON object in the given buffer, with the modes in the options applied during parsing.
+     *
+     * @see JsonTreeParser#parseJsonObject(Buffer, JsonParseOptions)
+     * @since 5.0.0
+     */
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        return JsonTreeParser.parseJsonObject(buffer, options);
+    }
+
+    /**
+     * Parse the JSON object expression, with the modes in the options applied during parsing.
+     *
+     * @see JsonTreeParser#parseJsonObject(String, JsonParseOptions)
+     * @since 5.0.0
+     */
+    @Nonnull
+    public static JsonObject parseJsonObject(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options) {
+        return JsonTreeParser.parseJsonObject(jsonExpression, options);
+    }
+
+    /**
+     * Parse the JSON array in the given buffer, with the modes in the options applied during parsing.
+     *
+     * @see JsonTreeParser#parseJsonArray(Buffer, JsonParseOptions)
+     * @since 5.0.0
+     */
+    @Nonnull
+    public static JsonArray parseJsonArray(@Nonnull Buffer buffer, @Nonnull JsonParseOptions options) {
+        return JsonTreeParser.parseJsonArray(buffer, options);
+    }
+
+    /**
+     * Parse the JSON array expression, with the modes in the options applied during parsing.
+     *
+     * @see JsonTreeParser#parseJsonArray(String, JsonParseOptions)
+     * @since 5.0.0
+     */
+    @Nonnull
+    public static JsonArray parseJsonArray(@Nonnull String jsonExpression, @Nonnull JsonParseOptions options) {
+        return JsonTreeParser.parseJsonArray(jsonExpression, options);
+    }
+
+    /**
+     * Deep merge the layers, from the lowest to the highest priority, with the default {@link JsonMerger}: objects
+     * merged by keys, arrays and other values replaced.
+     * The result shares the unmodified subtrees with the layers.
+     *
+     * @see JsonMerger#merge(List)
+     * @since 5.0.0
+     */
+    @Nonnull
+    public static JsonObject deepMerge(@Nonnull JsonObject... layers) {
+        return new JsonMerger().merge(layers);
+    }
+
     public static void filterStackTrace(
             @Nullable StackTraceElement[] stackTrace,
             @Nonnull Set<String> ignorableStackPackageSet,
@@ -114,48 +174,149 @@ public class JsonUtils {
 
     /**
      * @since 3.0.0
+     * @since 5.0.0 delegates to {@link #renderJsonToAppendable(String, Object, Appendable)}.
      */
     @Nonnull
     public static String renderJsonToStringBlock(@Nullable String name, @Nullable Object object) {
         if (object == null) {
             return "null";
         }
-        return renderJsonItem(name, object, 0, null);
+        StringBuilder sb = new StringBuilder();
+        try {
+            renderJsonToAppendable(name, object, sb);
+        } catch (IOException e) {
+            // StringBuilder never throws IOException
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
     }
 
     /**
-     * @param key    Key of entry amongst the entries, or the index amongst the array.
-     * @param object Value of entry amongst the entries, or the item amongst the array.
-     * @return rendered string block ended with NEW_LINE.
+     * Render the JSON item as a text block into the given {@link Appendable} (such as a {@link StringBuilder} or a
+     * {@link java.io.Writer}) in one pass, with no limit on depth or items.
+     *
+     * @param name       the name of the root item, nullable
+     * @param object     the root item, commonly a {@link JsonObject} or a {@link JsonArray}
+     * @param appendable the target to write the rendered text block into
+     * @throws IOException if the appendable fails to be written
+     * @see #renderJsonToAppendable(String, Object, Appendable, int, int)
+     * @since 5.0.0
      */
-    @Nonnull
-    private static String renderJsonItem(@Nullable String key, @Nullable Object object, int indentation, @Nullable String typeMark) {
-        StringBuilder subBlock = new StringBuilder();
+    public static void renderJsonToAppendable(
+            @Nullable String name,
+            @Nullable Object object,
+            @Nonnull Appendable appendable
+    ) throws IOException {
+        renderJsonToAppendable(name, object, appendable, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Render the JSON item as a text block into the given {@link Appendable} in one pass.
+     * <p>
+     * The output is the same as {@link #renderJsonToStringBlock(String, Object)} when no limit is hit.
+     * A {@link JsonObject} or {@link JsonArray} nested deeper than {@code maxDepth} is rendered as {@code {...}} or
+     * {@code [...]}; the entries of one container beyond {@code maxItems} are summarized into one line.
+     *
+     * @param name       the name of the root item, nullable
+     * @param object     the root item, commonly a {@link JsonObject} or a {@link JsonArray}
+     * @param appendable the target to write the rendered text block into
+     * @param maxDepth   the max depth of containers to expand, the root is of depth 0; {@link Integer#MAX_VALUE} for
+     *                   no limit
+     * @param maxItems   the max count of entries rendered for each container; {@link Integer#MAX_VALUE} for no limit
+     * @throws IOException if the appendable fails to be written
+     * @since 5.0.0
+     */
+    public static void renderJsonToAppendable(
+            @Nullable String name,
+            @Nullable Object object,
+            @Nonnull Appendable appendable,
+            int maxDepth,
+            int maxItems
+    ) throws IOException {
+        if (object == null) {
+            appendable.append("null");
+            return;
+        }
+        renderJsonItem(appendable, name, object, 0, '\0', maxDepth, maxItems);
+    }
+
+    /**
+     * Spaces to be sliced as indentation, so that no indentation string is built per line.
+     */
+    private static final String INDENTATION_SPACES = " ".repeat(64);
+
+    private static void appendIndentation(@Nonnull Appendable appendable, int count) throws IOException {
+        while (count > 0) {
+            int n = Math.min(count, INDENTATION_SPACES.length());
+            appendable.append(INDENTATION_SPACES, 0, n);
+            count -= n;
+        }
+    }
+
+    /**
+     * @param key         Key of entry amongst the entries, or the index amongst the array.
+     * @param object      Value of entry amongst the entries, or the item amongst the array.
+     * @param indentation count of leading spaces, equals twice the depth.
+     * @param typeMark    mark of the item: {@code +} for an entry, {@code -} for an array item; ignored for the root.
+     * @since 5.0.0 writes into the appendable, ended with NEW_LINE.
+     */
+    private static void renderJsonItem(
+            @Nonnull Appendable appendable,
+            @Nullable String key,
+            @Nullable Object object,
+            int indentation,
+            char typeMark,
+            int maxDepth,
+            int maxItems
+    ) throws IOException {
         if (indentation > 1) {
-            subBlock.append(" ".repeat(indentation - 2));
-            subBlock.append(typeMark).append(" ");
+            appendIndentation(appendable, indentation - 2);
+            appendable.append(typeMark).append(' ');
         } else {
-            subBlock.append(" ".repeat(Math.max(0, indentation)));
+            appendIndentation(appendable, indentation);
         }
 
         if (key != null) {
-            subBlock.append(key).append(": ");
+            appendable.append(key).append(": ");
         }
+        int depth = indentation / 2;
         if (object instanceof JsonObject) {
-            subBlock.append("\n");
-            ((JsonObject) object).forEach(entry -> subBlock.append(
-                    renderJsonItem(entry.getKey(), entry.getValue(), indentation + 2, "+")
-            ));
+            JsonObject jsonObject = (JsonObject) object;
+            if (depth >= maxDepth && !jsonObject.isEmpty()) {
+                appendable.append("{...}\n");
+                return;
+            }
+            appendable.append('\n');
+            int rendered = 0;
+            for (var entry : jsonObject) {
+                if (rendered >= maxItems) {
+                    renderOmittedItems(appendable, indentation + 2, '+', jsonObject.size() - rendered);
+                    break;
+                }
+                renderJsonItem(appendable, entry.getKey(), entry.getValue(), indentation + 2, '+', maxDepth, maxItems);
+                rendered++;
+            }
         } else if (object instanceof JsonArray) {
-            subBlock.append("\n");
-            for (int i = 0; i < ((JsonArray) object).size(); i++) {
-                subBlock.append(
-                        renderJsonItem(i + "", ((JsonArray) object).getValue(i), indentation + 2, "-")
-                );
+            JsonArray jsonArray = (JsonArray) object;
+            if (depth >= maxDepth && !jsonArray.isEmpty()) {
+                appendable.append("[...]\n");
+                return;
+            }
+            appendable.append('\n');
+            for (int i = 0; i < jsonArray.size(); i++) {
+                if (i >= maxItems) {
+                    renderOmittedItems(appendable, indentation + 2, '-', jsonArray.size() - i);
+                    break;
+                }
+                renderJsonItem(appendable, String.valueOf(i), jsonArray.getValue(i), indentation + 2, '-', maxDepth, maxItems);
             }
         } else {
-            subBlock.append(object).append("\n");
+            appendable.append(String.valueOf(object)).append('\n');
         }
-        return subBlock.toString();
+    }
+
+    private static void renderOmittedItems(@Nonnull Appendable appendable, int indentation, char typeMark, int omitted) throws IOException {
+        appendIndentation(appendable, indentation - 2);
+        appendable.append(typeMark).append(" ... (").append(String.valueOf(omitted)).append(" more)\n");
     }
 }